@@ -1,14 +1,80 @@
 package github.me_asri.ansu;
 
 import android.app.Application;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
 
 import com.google.android.material.color.DynamicColors;
 
+import java.io.File;
+
+import de.sfuhrm.sudoku.Creator;
+import de.sfuhrm.sudoku.GameMatrix;
+import de.sfuhrm.sudoku.GameSchemas;
+import github.me_asri.ansu.core.Grader;
+import github.me_asri.ansu.core.Grids;
+import github.me_asri.ansu.core.Metrics;
+import github.me_asri.ansu.core.Puzzle;
+import github.me_asri.ansu.core.RiddlePool;
+
 public class AnsuApplication extends Application {
+    static private final String RIDDLE_POOL_FILE = "riddle_pool.txt";
+    static private final int RIDDLE_POOL_CAPACITY = 16;
+    static private final String AUTOSAVE_FILE = "autosave.bin";
+    static private final String JOURNAL_FILE = "journal.bin";
+    static private final String PREFERENCES = "settings";
+    static private final String PREF_METRICS_ENABLED = "metrics_enabled";
+
+    private RiddlePool mRiddlePool;
+    private Autosave mAutosave;
+
     @Override
     public void onCreate() {
         super.onCreate();
 
         DynamicColors.applyToActivitiesIfAvailable(this);
+
+        // Recorded by default only in debug builds
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        Metrics.setEnabled(getPreferences().getBoolean(PREF_METRICS_ENABLED, debuggable));
+
+        mRiddlePool = new RiddlePool(GameSchemas.SCHEMA_9X9.getWidth(), RIDDLE_POOL_CAPACITY,
+                AnsuApplication::createRiddle, new File(getFilesDir(), RIDDLE_POOL_FILE));
+        mRiddlePool.start();
+
+        mAutosave = new Autosave(new File(getFilesDir(), AUTOSAVE_FILE),
+                new File(getFilesDir(), JOURNAL_FILE));
+    }
+
+    public RiddlePool getRiddlePool() {
+        return mRiddlePool;
+    }
+
+    public Autosave getAutosave() {
+        return mAutosave;
+    }
+
+    /**
+     * Turns {@link Metrics} recording on or off, remembered across restarts.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        Metrics.setEnabled(enabled);
+        getPreferences().edit().putBoolean(PREF_METRICS_ENABLED, enabled).apply();
+    }
+
+    private SharedPreferences getPreferences() {
+        return getSharedPreferences(PREFERENCES, MODE_PRIVATE);
+    }
+
+    /**
+     * Generates and grades a new riddle.
+     */
+    static public Puzzle createRiddle() {
+        GameMatrix matrix = Creator.createFull(GameSchemas.SCHEMA_9X9);
+
+        Puzzle riddle = new Puzzle(Grids.toArray(Creator.createRiddle(matrix)));
+        Grader.forWidth(GameSchemas.SCHEMA_9X9.getWidth()).grade(riddle);
+
+        return riddle;
     }
 }
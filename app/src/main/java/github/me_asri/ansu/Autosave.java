@@ -0,0 +1,324 @@
+package github.me_asri.ansu;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import github.me_asri.ansu.core.BoardCodec;
+
+/**
+ * Keeps the session in a file so it survives process death.
+ * <p>
+ * Saving hands the state over to a background thread, which writes it. If saves arrive faster
+ * than they are written, only the latest one is written. The file is replaced atomically, so it
+ * is never left half written.
+ * <p>
+ * The move journal goes to a second file as 4 bytes per move. Each save only carries the moves
+ * changed since the previous one, which are written over the end of that file. After a failed
+ * journal write, saves have to carry the whole journal until one succeeds, see
+ * {@link #needsFullJournal()}.
+ */
+public class Autosave {
+    static private final String TAG = Autosave.class.toString();
+
+    static private final int MAGIC = 0x414E5355;
+    static private final int VERSION = 2;
+
+    private final File mFile;
+    private final File mJournalFile;
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Guarded by this
+    private State mPending = null;
+    // Set by the writer once the journal file lost moves, until a save carries all of them
+    private volatile boolean mJournalBroken = false;
+
+    static public class State {
+        // Board in BoardCodec format
+        byte[] board;
+        boolean showNotes;
+        int uiState;
+
+        // Puzzle being played back in BoardCodec format or null
+        byte[] playbackPuzzle;
+        int playbackPosition;
+        boolean playbackPaused;
+        float playbackSpeed;
+
+        // Moves from index journalFrom on, see MoveJournal#copyMoves(int)
+        int journalFrom;
+        int[] journalMoves;
+        int journalCursor;
+    }
+
+    public Autosave(File file, File journalFile) {
+        mFile = file;
+        mJournalFile = journalFile;
+    }
+
+    public void save(State state) {
+        boolean schedule;
+        synchronized (this) {
+            if (mPending != null) {
+                state = merge(mPending, state);
+            }
+
+            // Only schedule a write if none is pending, that one picks up the latest state
+            schedule = mPending == null;
+            mPending = state;
+        }
+
+        if (schedule) {
+            mExecutor.execute(this::write);
+        }
+    }
+
+    /**
+     * @return true if the next save has to carry the journal from its first move, because a
+     * write failed and the journal file is missing moves
+     */
+    public boolean needsFullJournal() {
+        return mJournalBroken;
+    }
+
+    /**
+     * Reads the saved session on the calling thread, once the saves handed over so far are written.
+     *
+     * @return the session or null if there is none or it is unreadable
+     */
+    public State load() {
+        awaitWrites();
+        return read();
+    }
+
+    /**
+     * Reads the saved session in the background, once the saves handed over so far are written,
+     * and passes it to the callback on the main thread.
+     *
+     * @param callback receives the session or null if there is none or it is unreadable
+     */
+    public void load(Consumer<State> callback) {
+        mExecutor.execute(() -> {
+            State state = read();
+            mHandler.post(() -> callback.accept(state));
+        });
+    }
+
+    private State read() {
+        if (!mFile.exists()) {
+            return null;
+        }
+
+        State state = new State();
+        int journalSize;
+        try (DataInputStream input = new DataInputStream(new FileInputStream(mFile))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                Log.w(TAG, "read: Unknown autosave format");
+                return null;
+            }
+
+            state.board = readBytes(input);
+            state.showNotes = input.readBoolean();
+            state.uiState = input.readInt();
+
+            state.playbackPuzzle = readBytes(input);
+            state.playbackPosition = input.readInt();
+            state.playbackPaused = input.readBoolean();
+            state.playbackSpeed = input.readFloat();
+
+            journalSize = input.readInt();
+            state.journalCursor = input.readInt();
+
+            if (state.board == null) {
+                return null;
+            }
+            BoardCodec.width(state.board);
+            if (state.playbackPuzzle != null) {
+                BoardCodec.width(state.playbackPuzzle);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "read: Failed to read autosave: " + e);
+            return null;
+        }
+
+        state.journalMoves = loadJournal(journalSize);
+        if (state.journalMoves.length == 0) {
+            state.journalCursor = 0;
+        }
+
+        return state;
+    }
+
+    private void awaitWrites() {
+        try {
+            // Runs after any write scheduled before it
+            mExecutor.submit(() -> {
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the first moves of the journal file or an empty array if it has fewer
+     */
+    private int[] loadJournal(int size) {
+        if (size <= 0 || mJournalFile.length() < size * 4L) {
+            return new int[0];
+        }
+
+        int[] moves = new int[size];
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(mJournalFile)))) {
+            for (int i = 0; i < size; i++) {
+                moves[i] = input.readInt();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "loadJournal: Failed to read journal: " + e);
+            return new int[0];
+        }
+
+        return moves;
+    }
+
+    /**
+     * Combines a pending state with a newer one whose journal changes start later.
+     */
+    static private State merge(State pending, State state) {
+        if (state.journalFrom > pending.journalFrom) {
+            int kept = state.journalFrom - pending.journalFrom;
+            int[] moves = Arrays.copyOf(pending.journalMoves, kept + state.journalMoves.length);
+            System.arraycopy(state.journalMoves, 0, moves, kept, state.journalMoves.length);
+
+            state.journalFrom = pending.journalFrom;
+            state.journalMoves = moves;
+        }
+
+        return state;
+    }
+
+    private void write() {
+        State state;
+        synchronized (this) {
+            state = mPending;
+            mPending = null;
+        }
+
+        int journalSize = state.journalFrom + state.journalMoves.length;
+        int journalCursor = state.journalCursor;
+        // Once broken, only a save carrying every move may write the journal again
+        boolean written = (state.journalFrom == 0 || !mJournalBroken)
+                && writeJournal(state.journalFrom, state.journalMoves);
+        mJournalBroken = !written;
+        if (!written) {
+            // Saved without history rather than with a broken one
+            journalSize = 0;
+            journalCursor = 0;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+
+            writeBytes(output, state.board);
+            output.writeBoolean(state.showNotes);
+            output.writeInt(state.uiState);
+
+            writeBytes(output, state.playbackPuzzle);
+            output.writeInt(state.playbackPosition);
+            output.writeBoolean(state.playbackPaused);
+            output.writeFloat(state.playbackSpeed);
+
+            output.writeInt(journalSize);
+            output.writeInt(journalCursor);
+        } catch (IOException e) {
+            // Not thrown by ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        byte[] data = bytes.toByteArray();
+
+        File temp = new File(mFile.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            output.write(data);
+            output.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "write: Failed to write autosave: " + e);
+            return;
+        }
+
+        if (!temp.renameTo(mFile)) {
+            Log.e(TAG, "write: Failed to replace autosave file");
+        }
+    }
+
+    /**
+     * Writes the moves from the given index on over the end of the journal file.
+     *
+     * @return false if the journal file is unusable
+     */
+    private boolean writeJournal(int from, int[] moves) {
+        try (RandomAccessFile file = new RandomAccessFile(mJournalFile, "rw")) {
+            if (file.length() < from * 4L) {
+                // Earlier moves never made it to disk
+                Log.w(TAG, "writeJournal: Journal file is missing moves");
+                file.setLength(0);
+                return false;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(moves.length * 4);
+            buffer.asIntBuffer().put(moves);
+
+            file.setLength(from * 4L);
+            file.seek(from * 4L);
+            file.write(buffer.array());
+            file.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "writeJournal: Failed to write journal: " + e);
+            return false;
+        }
+
+        return true;
+    }
+
+    static private void writeBytes(DataOutputStream output, byte[] data) throws IOException {
+        if (data == null) {
+            output.writeShort(-1);
+            return;
+        }
+
+        output.writeShort(data.length);
+        output.write(data);
+    }
+
+    static private byte[] readBytes(DataInputStream input) throws IOException {
+        int length = input.readShort();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] data = new byte[length];
+        input.readFully(data);
+
+        return data;
+    }
+}
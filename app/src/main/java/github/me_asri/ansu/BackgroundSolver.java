@@ -0,0 +1,250 @@
+package github.me_asri.ansu;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import github.me_asri.ansu.core.Board;
+import github.me_asri.ansu.core.CancellationToken;
+import github.me_asri.ansu.core.Generator;
+import github.me_asri.ansu.core.Grade;
+import github.me_asri.ansu.core.Grader;
+import github.me_asri.ansu.core.LatencyHistogram;
+import github.me_asri.ansu.core.LogicSolver;
+import github.me_asri.ansu.core.Metrics;
+import github.me_asri.ansu.core.PortfolioSolver;
+import github.me_asri.ansu.core.Puzzle;
+import github.me_asri.ansu.core.SolveTrace;
+import github.me_asri.ansu.core.Uniqueness;
+
+/**
+ * Runs {@link LogicSolver} on a background thread and reports back on the main thread.
+ */
+public class BackgroundSolver {
+    static private final String TAG = BackgroundSolver.class.toString();
+
+    static private final long STILL_WORKING_INTERVAL_MS = 1000;
+
+    static private final LatencyHistogram SOLVE_LATENCY = Metrics.histogram("solve");
+    static private final AtomicLong SOLVE_TIMEOUTS = Metrics.counter("solve.timeouts");
+    static private final AtomicLong SOLVE_UNSOLVABLE = Metrics.counter("solve.unsolvable");
+    static private final LatencyHistogram GENERATE_LATENCY = Metrics.histogram("generate");
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    // Runs the strategies of a PortfolioSolver once a board takes more than a head start
+    private final ExecutorService mRaces = Executors.newCachedThreadPool();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private CancellationToken mToken = null;
+    private Runnable mStillWorkingRunnable = null;
+
+    public interface Callback {
+        /**
+         * @param uniqueness {@link Uniqueness#MULTIPLE} if the trace shows just one of several solutions
+         */
+        void onSolved(SolveTrace trace, Uniqueness uniqueness);
+
+        void onNoSolution();
+
+        void onTimeout();
+
+        void onStillWorking(long elapsedMs);
+    }
+
+    public interface GenerateCallback {
+        void onGenerated(Puzzle riddle);
+
+        /**
+         * Called instead if no riddle met the goals of the generator.
+         */
+        void onFailed();
+    }
+
+    /**
+     * Starts solving the given board, cancelling any solve still in progress.
+     * Callbacks are never invoked for a cancelled solve.
+     */
+    public void solve(Board board, long timeoutMs, Callback callback) {
+        cancel();
+
+        CancellationToken token = new CancellationToken(timeoutMs, TimeUnit.MILLISECONDS);
+        mToken = token;
+
+        long startTime = System.currentTimeMillis();
+        mStillWorkingRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (token.isCancelled()) {
+                    return;
+                }
+
+                callback.onStillWorking(System.currentTimeMillis() - startTime);
+                mHandler.postDelayed(this, STILL_WORKING_INTERVAL_MS);
+            }
+        };
+        mHandler.postDelayed(mStillWorkingRunnable, STILL_WORKING_INTERVAL_MS);
+
+        mExecutor.execute(() -> {
+            Trace.beginSection("solve");
+            long start = Metrics.start();
+            try {
+                runSolve(board, token, callback);
+            } finally {
+                Metrics.stop(SOLVE_LATENCY, start);
+                Trace.endSection();
+            }
+        });
+    }
+
+    /**
+     * Grades the puzzle on the solver thread unless it carries a grade already, cancelling any
+     * solve or generation still in progress. The callback is invoked on the main thread, never
+     * once the grading was cancelled or superseded.
+     */
+    public void grade(Puzzle puzzle, Consumer<Grade> callback) {
+        cancel();
+        if (puzzle.getGrade() != null) {
+            callback.accept(puzzle.getGrade());
+            return;
+        }
+
+        CancellationToken token = new CancellationToken();
+        mToken = token;
+
+        mExecutor.execute(() -> {
+            Grader grader = Grader.forWidth(puzzle.getWidth());
+            grader.setCancellationToken(token);
+            try {
+                Grade grade = grader.grade(puzzle);
+                deliver(token, () -> callback.accept(grade));
+            } catch (CancellationException e) {
+                Log.i(TAG, "grade: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Generates and grades a riddle of the given width on the solver thread, cancelling any solve
+     * or generation still in progress. Callbacks are invoked on the main thread, never for a
+     * cancelled generation.
+     */
+    public void generate(int width, GenerateCallback callback) {
+        cancel();
+
+        CancellationToken token = new CancellationToken();
+        mToken = token;
+
+        mExecutor.execute(() -> {
+            Trace.beginSection("generate");
+            long start = Metrics.start();
+            try {
+                Generator generator = Generator.forWidth(width);
+                generator.setCancellationToken(token);
+                Puzzle riddle = generator.createPuzzle();
+
+                Grader grader = Grader.forWidth(width);
+                grader.setCancellationToken(token);
+                grader.grade(riddle);
+
+                deliver(token, () -> callback.onGenerated(riddle));
+            } catch (CancellationException e) {
+                Log.i(TAG, "generate: " + e.getMessage());
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "generate: " + e.getMessage());
+                deliver(token, callback::onFailed);
+            } finally {
+                Metrics.stop(GENERATE_LATENCY, start);
+                Trace.endSection();
+            }
+        });
+    }
+
+    public boolean isSolving() {
+        return mToken != null;
+    }
+
+    public void cancel() {
+        if (mToken == null) {
+            return;
+        }
+
+        mToken.cancel();
+        mToken = null;
+
+        mHandler.removeCallbacks(mStillWorkingRunnable);
+        mStillWorkingRunnable = null;
+    }
+
+    public void shutdown() {
+        cancel();
+        mExecutor.shutdownNow();
+        mRaces.shutdownNow();
+    }
+
+    private void runSolve(Board board, CancellationToken token, Callback callback) {
+        byte[] puzzle = board.toArray();
+        int width = board.getWidth();
+
+        Uniqueness uniqueness;
+        SolveTrace trace;
+        try {
+            // Stops at the second solution, so under-constrained boards cost no more than two
+            PortfolioSolver checker = new PortfolioSolver(width, mRaces);
+            checker.setCancellationToken(token);
+            byte[] solution = new byte[puzzle.length];
+            uniqueness = checker.checkUniqueness(puzzle, solution);
+            if (checker.getWinner() != null) {
+                Log.i(TAG, "solve: Raced, won by " + checker.getWinner());
+            }
+            if (uniqueness == Uniqueness.NONE) {
+                Metrics.increment(SOLVE_UNSOLVABLE);
+                deliver(token, callback::onNoSolution);
+                return;
+            }
+
+            LogicSolver solver = LogicSolver.forWidth(width);
+            solver.setCancellationToken(token);
+
+            // Guesses come from the race's solution rather than another plain search
+            trace = solver.solve(puzzle, solution);
+        } catch (CancellationException e) {
+            Log.i(TAG, "solve: " + e.getMessage());
+
+            if (token.isTimedOut()) {
+                Metrics.increment(SOLVE_TIMEOUTS);
+                deliver(token, callback::onTimeout);
+            }
+            return;
+        }
+
+        if (!trace.isSolved()) {
+            Metrics.increment(SOLVE_UNSOLVABLE);
+            deliver(token, callback::onNoSolution);
+        } else {
+            deliver(token, () -> callback.onSolved(trace, uniqueness));
+        }
+    }
+
+    private void deliver(CancellationToken token, Runnable action) {
+        mHandler.post(() -> {
+            // Cancelled or superseded while the result was in flight
+            if (token != mToken) {
+                return;
+            }
+
+            mToken = null;
+            mHandler.removeCallbacks(mStillWorkingRunnable);
+            mStillWorkingRunnable = null;
+
+            action.run();
+        });
+    }
+}
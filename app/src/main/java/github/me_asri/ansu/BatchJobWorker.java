@@ -0,0 +1,168 @@
+package github.me_asri.ansu;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.security.InvalidParameterException;
+
+import github.me_asri.ansu.core.BatchJob;
+import github.me_asri.ansu.core.CancellationToken;
+
+/**
+ * Runs a {@link BatchJob} over a puzzle document, writing the results to another document.
+ * <p>
+ * Checkpoints are kept in preferences under the id of the work. WorkManager runs work again
+ * once the process was killed or the work was stopped, and it then resumes from the last
+ * checkpoint, so long jobs need no foreground service either.
+ */
+public class BatchJobWorker extends Worker {
+    static private final String TAG = BatchJobWorker.class.toString();
+
+    static public final String UNIQUE_WORK_NAME = "batch_job";
+
+    static private final String KEY_INPUT = "input";
+    static private final String KEY_OUTPUT = "output";
+    static private final String KEY_MODE = "mode";
+    static public final String KEY_PUZZLES = "puzzles";
+    // Percentage of the input read, -1 if the size is unknown
+    static public final String KEY_PROGRESS = "progress";
+    static public final String KEY_ERROR = "error";
+
+    static private final String PREFERENCES = "batch_jobs";
+    static private final String PREF_PUZZLES = ".puzzles";
+    static private final String PREF_OUTPUT_BYTES = ".output_bytes";
+
+    private final CancellationToken mToken = new CancellationToken();
+
+    public BatchJobWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Queues a job after any running one. Both documents need persisted permissions, as the job
+     * may be resumed by a later process.
+     */
+    static public void enqueue(Context context, Uri input, Uri output, BatchJob.Mode mode) {
+        Data data = new Data.Builder()
+                .putString(KEY_INPUT, input.toString())
+                .putString(KEY_OUTPUT, output.toString())
+                .putString(KEY_MODE, mode.name())
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(BatchJobWorker.class)
+                .setInputData(data)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    /**
+     * Cancels the running and all queued jobs, dropping their checkpoints.
+     */
+    static public void cancelAll(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(UNIQUE_WORK_NAME);
+        context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit().clear().apply();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Uri input = Uri.parse(getInputData().getString(KEY_INPUT));
+        Uri output = Uri.parse(getInputData().getString(KEY_OUTPUT));
+        BatchJob.Mode mode = BatchJob.Mode.valueOf(getInputData().getString(KEY_MODE));
+
+        SharedPreferences checkpoints = getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        String key = getId().toString();
+        long puzzles = checkpoints.getLong(key + PREF_PUZZLES, 0);
+        long outputBytes = checkpoints.getLong(key + PREF_OUTPUT_BYTES, 0);
+        if (puzzles > 0) {
+            Log.i(TAG, "doWork: Resuming after " + puzzles + " puzzles");
+        }
+
+        ContentResolver resolver = getApplicationContext().getContentResolver();
+        try (ParcelFileDescriptor inputDescriptor = resolver.openFileDescriptor(input, "r");
+             ParcelFileDescriptor outputDescriptor = resolver.openFileDescriptor(output, "rw");
+             FileInputStream inputStream = new FileInputStream(inputDescriptor.getFileDescriptor());
+             FileOutputStream outputStream = new FileOutputStream(outputDescriptor.getFileDescriptor())) {
+            FileChannel inputChannel = inputStream.getChannel();
+            long inputSize = inputDescriptor.getStatSize();
+
+            BatchJob job = new BatchJob(mode, mToken);
+            long done = job.run(inputStream, outputStream.getChannel(), puzzles, outputBytes, (count, length) -> {
+                // Committed right away, output past it is cut off again when resuming
+                checkpoints.edit()
+                        .putLong(key + PREF_PUZZLES, count)
+                        .putLong(key + PREF_OUTPUT_BYTES, length)
+                        .commit();
+                setProgressAsync(new Data.Builder()
+                        .putLong(KEY_PUZZLES, count)
+                        .putInt(KEY_PROGRESS, progress(inputChannel, inputSize))
+                        .build());
+            });
+
+            if (mToken.isCancelled()) {
+                // Stopped, the checkpoint is kept for the next run
+                return Result.retry();
+            }
+
+            Log.i(TAG, "doWork: Finished " + done + " puzzles");
+            finish(checkpoints, key, input, output);
+            return Result.success(new Data.Builder().putLong(KEY_PUZZLES, done).build());
+
+        } catch (IOException | InvalidParameterException | SecurityException e) {
+            Log.e(TAG, "doWork: " + e);
+            finish(checkpoints, key, input, output);
+            return Result.failure(new Data.Builder().putString(KEY_ERROR, e.getMessage()).build());
+        }
+    }
+
+    @Override
+    public void onStopped() {
+        mToken.cancel();
+    }
+
+    private void finish(SharedPreferences checkpoints, String key, Uri input, Uri output) {
+        checkpoints.edit()
+                .remove(key + PREF_PUZZLES)
+                .remove(key + PREF_OUTPUT_BYTES)
+                .apply();
+
+        ContentResolver resolver = getApplicationContext().getContentResolver();
+        try {
+            resolver.releasePersistableUriPermission(input, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            resolver.releasePersistableUriPermission(output,
+                    Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+        } catch (SecurityException e) {
+            Log.w(TAG, "finish: " + e);
+        }
+    }
+
+    static private int progress(FileChannel input, long size) {
+        if (size <= 0) {
+            return -1;
+        }
+
+        try {
+            return (int) Math.min(100, input.position() * 100 / size);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
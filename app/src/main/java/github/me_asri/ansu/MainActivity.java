@@ -1,8 +1,13 @@
 package github.me_asri.ansu;
 
 import android.content.Context;
-import android.os.Build;
+import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.Trace;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -13,53 +18,138 @@ import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
 
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidParameterException;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-
-import de.sfuhrm.sudoku.Creator;
-import de.sfuhrm.sudoku.GameMatrix;
-import de.sfuhrm.sudoku.GameSchemas;
-import de.sfuhrm.sudoku.Riddle;
-import de.sfuhrm.sudoku.Solver;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import github.me_asri.ansu.core.BatchJob;
+import github.me_asri.ansu.core.Board;
+import github.me_asri.ansu.core.BoardCodec;
+import github.me_asri.ansu.core.Grade;
+import github.me_asri.ansu.core.LatencyHistogram;
+import github.me_asri.ansu.core.Metrics;
+import github.me_asri.ansu.core.MoveJournal;
+import github.me_asri.ansu.core.Puzzle;
+import github.me_asri.ansu.core.PuzzleLibrary;
+import github.me_asri.ansu.core.RiddlePool;
+import github.me_asri.ansu.core.SolveTrace;
+import github.me_asri.ansu.core.Technique;
+import github.me_asri.ansu.core.Uniqueness;
 import github.me_asri.ansu.databinding.ActivityMainBinding;
 
 public class MainActivity extends AppCompatActivity {
     static private final String TAG = MainActivity.class.toString();
 
     static private final String BUNDLE_KEY_UI_STATE = "ui_state";
+    static private final String BUNDLE_KEY_PLAYBACK_PUZZLE = "playback_puzzle";
+    static private final String BUNDLE_KEY_PLAYBACK_POSITION = "playback_position";
+    static private final String BUNDLE_KEY_PLAYBACK_SPEED = "playback_speed";
+    static private final String BUNDLE_KEY_PLAYBACK_PAUSED = "playback_paused";
+    static private final String BUNDLE_KEY_BATCH_MODE = "batch_mode";
+    static private final String BUNDLE_KEY_BATCH_INPUT = "batch_input";
+
+    static private final long SOLVE_TIMEOUT_MS = 30000;
+    static private final long AUTOSAVE_DELAY_MS = 1000;
+
+    static private final LatencyHistogram POOL_LATENCY = Metrics.histogram("generate.pool");
+    static private final AtomicLong POOL_MISSES = Metrics.counter("generate.pool_misses");
+    static private final AtomicLong CACHED_SOLVES = Metrics.counter("solve.cached");
+
+    // Subtitles are built once, playback shows one per frame
+    static private final String[] TECHNIQUE_NAMES = new String[Technique.values().length];
+
+    static {
+        for (Technique technique : Technique.values()) {
+            TECHNIQUE_NAMES[technique.ordinal()] = displayName(technique);
+        }
+    }
 
     private ActivityMainBinding mBinding;
     private MenuItem mSolveItem;
+    private MenuItem mUndoItem;
+    private MenuItem mRedoItem;
+    private MenuItem mPauseItem;
+    private MenuItem mFasterItem;
+    private MenuItem mSlowerItem;
+    private MenuItem mFinishItem;
+    private MenuItem mSize9Item;
+    private MenuItem mSize16Item;
+    private MenuItem mSize25Item;
 
     private UiState mUiState = UiState.USER_INPUT;
-    private Timer mTimer = null;
+
+    private SolutionPlayer mPlayer;
+    // Puzzle being played back and the step to resume from, kept across configuration changes
+    private Board mPlaybackPuzzle = null;
+    private int mPlaybackPosition = 0;
+    private boolean mPlaybackPaused = false;
+
+    private final BackgroundSolver mSolver = new BackgroundSolver();
+    private final SolvabilityChecker mChecker = new SolvabilityChecker(this::showSolvability);
+    // Difficulty of the riddle loaded last, shown while the board stays solvable
+    private String mGradeText = null;
+    private final Random mRandom = new Random();
+    // Whether the subtitle says a riddle is being generated
+    private boolean mGenerating = false;
+
+    private Autosave mAutosave;
+    private SessionViewModel mSession;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mAutosaveRunnable = this::saveSession;
+    private boolean mStillWorkingShown = false;
 
     private InputMethodManager inputMethodManager;
 
+    // Batch job being set up, between picking its input and its output
+    private BatchJob.Mode mBatchMode = null;
+    private Uri mBatchInput = null;
+    private boolean mBatchRunning = false;
+
     private final ActivityResultLauncher<String[]> mOpenDocLauncher = registerForActivityResult(
             new ActivityResultContracts.OpenDocument(), result -> {
                 if (result == null) {
                     return;
                 }
 
-                try (InputStream input = getContentResolver().openInputStream(result)) {
-                    GameMatrix imported = SudokuHelper.importFile(GameSchemas.SCHEMA_9X9, input);
-                    mBinding.board.loadRiddle(imported);
+                try (ParcelFileDescriptor descriptor = getContentResolver().openFileDescriptor(result, "r");
+                     FileInputStream input = new FileInputStream(descriptor.getFileDescriptor())) {
+                    // Libraries are mapped, so picking from millions of puzzles is instant
+                    FileChannel channel = input.getChannel();
+                    long size = channel.size();
+                    Puzzle imported = PuzzleLibrary.isLibrary(channel)
+                            ? SudokuHelper.importLibrary(channel, mRandom)
+                            : new Puzzle(SudokuHelper.importFile(input).toArray());
+                    stopSolution();
+                    mGradeText = null;
+                    mBinding.board.loadRiddle(Board.of(imported.getCells()));
+
+                    setUiState(UiState.USER_INPUT);
+                    mSolver.grade(imported, this::showGrade);
 
-                    Log.i(TAG, "OpenDocument: " + input.available());
+                    Log.i(TAG, "OpenDocument: " + size);
 
                 } catch (IOException e) {
                     Toast.makeText(this, "IO exception occurred", Toast.LENGTH_SHORT).show();
                     Log.e(TAG, "mCreateDocLauncher: " + e);
                 } catch (InvalidParameterException e) {
                     Toast.makeText(this, "Invalid file", Toast.LENGTH_SHORT).show();
+                    Log.e(TAG, "mOpenDocLauncher: " + e.getMessage());
                 }
             }
     );
@@ -79,6 +169,49 @@ public class MainActivity extends AppCompatActivity {
             }
     );
 
+    private final ActivityResultLauncher<String> mExportMetricsLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/json"), result -> {
+                if (result == null) {
+                    return;
+                }
+
+                try (OutputStream output = getContentResolver().openOutputStream(result)) {
+                    output.write(Metrics.toJson().getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    Toast.makeText(this, "IO exception occurred", Toast.LENGTH_SHORT).show();
+                    Log.e(TAG, "mExportMetricsLauncher: " + e);
+                }
+            }
+    );
+
+    private final ActivityResultLauncher<String[]> mBatchInputLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), result -> {
+                if (result == null || mBatchMode == null) {
+                    return;
+                }
+
+                // Kept across process restarts, the job may be resumed by a later process
+                getContentResolver().takePersistableUriPermission(result, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                mBatchInput = result;
+                mBatchOutputLauncher.launch(mBatchMode.name().toLowerCase(Locale.ROOT) + "_results.txt");
+            }
+    );
+
+    private final ActivityResultLauncher<String> mBatchOutputLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("text/plain"), result -> {
+                if (result == null || mBatchMode == null || mBatchInput == null) {
+                    return;
+                }
+
+                getContentResolver().takePersistableUriPermission(result,
+                        Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+                BatchJobWorker.enqueue(this, mBatchInput, result, mBatchMode);
+
+                mBatchMode = null;
+                mBatchInput = null;
+            }
+    );
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -87,14 +220,51 @@ public class MainActivity extends AppCompatActivity {
 
         inputMethodManager = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
 
+        mPlayer = new SolutionPlayer(mBinding.board, new SolutionPlayer.Listener() {
+            @Override
+            public void onPosition(int position, Technique technique) {
+                if (technique != null) {
+                    setSubtitle(TECHNIQUE_NAMES[technique.ordinal()]);
+                }
+            }
+
+            @Override
+            public void onFinished() {
+                mPlaybackPuzzle = null;
+                setUiState(UiState.USER_INPUT);
+            }
+        });
+
+        mAutosave = ((AnsuApplication) getApplication()).getAutosave();
+        mSession = new ViewModelProvider(this).get(SessionViewModel.class);
+        mBinding.board.setOnChangeListener(view -> {
+            updateUndoItems();
+            updateSizeItems();
+            scheduleAutosave();
+            scheduleCheck();
+        });
+
         if (savedInstanceState != null) {
             Log.i(TAG, "onCreate: Loading state");
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-                mUiState = savedInstanceState.getSerializable(BUNDLE_KEY_UI_STATE, UiState.class);
-            } else {
-                mUiState = (UiState) savedInstanceState.getSerializable(BUNDLE_KEY_UI_STATE);
-            }
+            mUiState = UiState.values()[savedInstanceState.getInt(BUNDLE_KEY_UI_STATE)];
+
+            byte[] puzzle = savedInstanceState.getByteArray(BUNDLE_KEY_PLAYBACK_PUZZLE);
+            mPlaybackPuzzle = (puzzle != null) ? Board.wrap(BoardCodec.decode(puzzle)) : null;
+            mPlaybackPosition = savedInstanceState.getInt(BUNDLE_KEY_PLAYBACK_POSITION);
+            mPlaybackPaused = savedInstanceState.getBoolean(BUNDLE_KEY_PLAYBACK_PAUSED);
+            mPlayer.setSpeed(savedInstanceState.getFloat(BUNDLE_KEY_PLAYBACK_SPEED, SolutionPlayer.DEFAULT_SPEED));
+
+            String batchMode = savedInstanceState.getString(BUNDLE_KEY_BATCH_MODE);
+            mBatchMode = (batchMode != null) ? BatchJob.Mode.valueOf(batchMode) : null;
+            mBatchInput = savedInstanceState.getParcelable(BUNDLE_KEY_BATCH_INPUT);
+        } else {
+            restoreSession();
+            mSession.setJournal(mBinding.board.getJournal());
         }
+
+        WorkManager.getInstance(this)
+                .getWorkInfosForUniqueWorkLiveData(BatchJobWorker.UNIQUE_WORK_NAME)
+                .observe(this, this::showBatchProgress);
     }
 
     @Override
@@ -108,9 +278,41 @@ public class MainActivity extends AppCompatActivity {
         mSolveItem = menu.findItem(R.id.solveItem);
         mSolveItem.setOnMenuItemClickListener(this::onSolveItemClick);
 
+        mUndoItem = menu.findItem(R.id.undoItem);
+        mUndoItem.setOnMenuItemClickListener(this::onUndoItemClick);
+
+        mRedoItem = menu.findItem(R.id.redoItem);
+        mRedoItem.setOnMenuItemClickListener(this::onRedoItemClick);
+
+        mPauseItem = menu.findItem(R.id.pauseItem);
+        mPauseItem.setOnMenuItemClickListener(this::onPauseItemClick);
+
+        mFasterItem = menu.findItem(R.id.fasterItem);
+        mFasterItem.setOnMenuItemClickListener(this::onFasterItemClick);
+
+        mSlowerItem = menu.findItem(R.id.slowerItem);
+        mSlowerItem.setOnMenuItemClickListener(this::onSlowerItemClick);
+
+        mFinishItem = menu.findItem(R.id.finishItem);
+        mFinishItem.setOnMenuItemClickListener(this::onFinishItemClick);
+
         MenuItem genItem = menu.findItem(R.id.generateItem);
         genItem.setOnMenuItemClickListener(this::onGenerateItemClick);
 
+        mSize9Item = menu.findItem(R.id.size9Item);
+        mSize9Item.setOnMenuItemClickListener(this::onSizeItemClick);
+
+        mSize16Item = menu.findItem(R.id.size16Item);
+        mSize16Item.setOnMenuItemClickListener(this::onSizeItemClick);
+
+        mSize25Item = menu.findItem(R.id.size25Item);
+        mSize25Item.setOnMenuItemClickListener(this::onSizeItemClick);
+        updateSizeItems();
+
+        MenuItem notesItem = menu.findItem(R.id.notesItem);
+        notesItem.setChecked(mBinding.board.isShowingNotes());
+        notesItem.setOnMenuItemClickListener(this::onNotesItemClick);
+
         MenuItem clearAnsItem = menu.findItem(R.id.clearAnsItem);
         clearAnsItem.setOnMenuItemClickListener(this::onClearAnsItemClick);
 
@@ -126,6 +328,11 @@ public class MainActivity extends AppCompatActivity {
         MenuItem lockTilesItem = menu.findItem(R.id.lockTilesItem);
         lockTilesItem.setOnMenuItemClickListener(this::onLockTilesItemClick);
 
+        MenuItem batchItem = menu.findItem(R.id.batchItem);
+        batchItem.setOnMenuItemClickListener(this::onBatchItemClick);
+
+        MenuItem metricsItem = menu.findItem(R.id.metricsItem);
+        metricsItem.setOnMenuItemClickListener(this::onMetricsItemClick);
 
         MenuItem exitItem = menu.findItem(R.id.exitItem);
         exitItem.setOnMenuItemClickListener(this::onExitItemClick);
@@ -134,24 +341,73 @@ public class MainActivity extends AppCompatActivity {
         Log.i(TAG, "onCreateOptionsMenu: Resuming");
         setUiState(mUiState);
         if (mUiState == UiState.SOLVING) {
-            startSolutionTimer();
+            if (mPlaybackPuzzle != null) {
+                // Replay the same trace and catch up to where playback was
+                solve(mPlaybackPuzzle, mPlaybackPosition);
+            } else {
+                startSolution();
+            }
         }
 
         return true;
     }
 
+    @Override
+    protected void onRestoreInstanceState(@NonNull Bundle savedInstanceState) {
+        super.onRestoreInstanceState(savedInstanceState);
+
+        // The board is restored by now, the journal is too large for the bundle
+        MoveJournal journal = mSession.getJournal();
+        if (journal != null) {
+            mBinding.board.setJournal(journal);
+            updateUndoItems();
+        } else {
+            mSession.setJournal(mBinding.board.getJournal());
+            restoreJournal();
+        }
+    }
+
     @Override
     protected void onSaveInstanceState(@NonNull Bundle outState) {
         super.onSaveInstanceState(outState);
 
-        outState.putSerializable(BUNDLE_KEY_UI_STATE, mUiState);
+        outState.putInt(BUNDLE_KEY_UI_STATE, mUiState.ordinal());
+        outState.putByteArray(BUNDLE_KEY_PLAYBACK_PUZZLE,
+                (mPlaybackPuzzle != null) ? BoardCodec.encode(mPlaybackPuzzle, null) : null);
+        outState.putInt(BUNDLE_KEY_PLAYBACK_POSITION, getPlaybackPosition());
+        outState.putBoolean(BUNDLE_KEY_PLAYBACK_PAUSED, mPlaybackPaused);
+        outState.putFloat(BUNDLE_KEY_PLAYBACK_SPEED, mPlayer.getSpeed());
+        outState.putString(BUNDLE_KEY_BATCH_MODE, (mBatchMode != null) ? mBatchMode.name() : null);
+        outState.putParcelable(BUNDLE_KEY_BATCH_INPUT, mBatchInput);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+
+        if (!mPlaybackPaused) {
+            mPlayer.resume();
+        }
     }
 
     @Override
     protected void onStop() {
         super.onStop();
 
-        stopSolutionTimer();
+        // No frames are drawn while stopped, continue where we left off
+        mPlayer.pause();
+
+        // The process may be killed from now on
+        mHandler.removeCallbacks(mAutosaveRunnable);
+        saveSession();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        mSolver.shutdown();
+        mChecker.shutdown();
     }
 
     private boolean onLoadItemClick(MenuItem item) {
@@ -163,34 +419,45 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private boolean onSolveItemClick(MenuItem item) {
-        if (mTimer != null) {
-            stopSolutionTimer();
+        if (mUiState == UiState.SOLVING) {
+            stopSolution();
 
             setUiState(UiState.USER_INPUT);
         } else {
-            if (startSolutionTimer()) {
-                setUiState(UiState.SOLVING);
-            }
+            setUiState(UiState.SOLVING);
+            startSolution();
         }
 
         return true;
     }
 
     private boolean onGenerateItemClick(MenuItem item) {
-        stopSolutionTimer();
-        closeKeyboard();
+        generate(mBinding.board.getMatrixWidth());
 
-        GameMatrix matrix = Creator.createFull(GameSchemas.SCHEMA_9X9);
-        Riddle riddle = Creator.createRiddle(matrix);
-        mBinding.board.loadRiddle(riddle);
+        return true;
+    }
 
-        setUiState(UiState.USER_INPUT);
+    private boolean onSizeItemClick(MenuItem item) {
+        if (item.getItemId() == R.id.size16Item) {
+            generate(16);
+        } else if (item.getItemId() == R.id.size25Item) {
+            generate(25);
+        } else {
+            generate(9);
+        }
+
+        return true;
+    }
+
+    private boolean onNotesItemClick(MenuItem item) {
+        item.setChecked(!item.isChecked());
+        mBinding.board.setShowNotes(item.isChecked());
 
         return true;
     }
 
     private boolean onClearAnsItemClick(MenuItem item) {
-        stopSolutionTimer();
+        stopSolution();
 
         mBinding.board.clearAnswers();
 
@@ -200,7 +467,8 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private boolean onClearBoardItemClick(MenuItem item) {
-        stopSolutionTimer();
+        stopSolution();
+        mGradeText = null;
 
         mBinding.board.clearBoard();
 
@@ -208,7 +476,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private boolean onExportItemClick(MenuItem item) {
-        stopSolutionTimer();
+        stopSolution();
 
         mCreateDocLauncher.launch("Riddle.sdk");
 
@@ -216,7 +484,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private boolean onUnlockTilesItemClick(MenuItem item) {
-        stopSolutionTimer();
+        stopSolution();
 
         mBinding.board.unlockAllTiles();
 
@@ -225,60 +493,412 @@ public class MainActivity extends AppCompatActivity {
 
     private boolean onLockTilesItemClick(MenuItem item) {
         closeKeyboard();
-        stopSolutionTimer();
+        stopSolution();
 
         mBinding.board.lockAllTiles();
 
         return true;
     }
 
+    private boolean onBatchItemClick(MenuItem item) {
+        if (mBatchRunning) {
+            new MaterialAlertDialogBuilder(this)
+                    .setTitle(R.string.item_batch)
+                    .setMessage(R.string.batch_cancel)
+                    .setPositiveButton(android.R.string.ok, (dialog, which) -> BatchJobWorker.cancelAll(this))
+                    .setNegativeButton(android.R.string.cancel, null)
+                    .show();
+            return true;
+        }
+
+        new MaterialAlertDialogBuilder(this)
+                .setTitle(R.string.item_batch)
+                .setItems(R.array.batch_modes, (dialog, which) -> {
+                    mBatchMode = BatchJob.Mode.values()[which];
+                    mBatchInputLauncher.launch(new String[]{
+                            "application/octet-stream", "application/gzip", "text/plain"
+                    });
+                })
+                .show();
+
+        return true;
+    }
+
+    private boolean onMetricsItemClick(MenuItem item) {
+        String text = Metrics.toText();
+        if (!Metrics.isEnabled()) {
+            text = getString(R.string.metrics_disabled) + "\n\n" + text;
+        }
+
+        AnsuApplication application = (AnsuApplication) getApplication();
+        new MaterialAlertDialogBuilder(this)
+                .setTitle(R.string.item_metrics)
+                .setMessage(text)
+                .setPositiveButton(R.string.metrics_export,
+                        (dialog, which) -> mExportMetricsLauncher.launch("metrics.json"))
+                .setNeutralButton(R.string.metrics_reset, (dialog, which) -> Metrics.reset())
+                .setNegativeButton(Metrics.isEnabled() ? R.string.metrics_disable : R.string.metrics_enable,
+                        (dialog, which) -> application.setMetricsEnabled(!Metrics.isEnabled()))
+                .show();
+
+        return true;
+    }
+
     private boolean onExitItemClick(MenuItem item) {
         finishAndRemoveTask();
 
         return true;
     }
 
-    private void stopSolutionTimer() {
-        if (mTimer == null) {
+    private boolean onUndoItemClick(MenuItem item) {
+        mBinding.board.undo();
+
+        return true;
+    }
+
+    private boolean onRedoItemClick(MenuItem item) {
+        mBinding.board.redo();
+
+        return true;
+    }
+
+    private boolean onPauseItemClick(MenuItem item) {
+        mPlaybackPaused = !mPlaybackPaused;
+        if (mPlaybackPaused) {
+            mPlayer.pause();
+        } else {
+            mPlayer.resume();
+        }
+        mPauseItem.setTitle(mPlaybackPaused ? R.string.item_resume : R.string.item_pause);
+
+        return true;
+    }
+
+    private boolean onFasterItemClick(MenuItem item) {
+        mPlayer.setSpeed(mPlayer.getSpeed() * 2);
+
+        return true;
+    }
+
+    private boolean onSlowerItemClick(MenuItem item) {
+        mPlayer.setSpeed(mPlayer.getSpeed() / 2);
+
+        return true;
+    }
+
+    private boolean onFinishItemClick(MenuItem item) {
+        mPlayer.finish();
+
+        return true;
+    }
+
+    private void stopSolution() {
+        mSolver.cancel();
+        mPlayer.stop();
+
+        mPlaybackPuzzle = null;
+        mPlaybackPosition = 0;
+
+        if (mGenerating) {
+            // Cancelled along with the solver
+            mGenerating = false;
+            setSubtitle(mGradeText);
+        }
+    }
+
+    /**
+     * Loads a new riddle of the given width. 9x9 riddles come from the pool, larger ones are
+     * generated in the background.
+     */
+    private void generate(int width) {
+        stopSolution();
+        closeKeyboard();
+
+        RiddlePool pool = ((AnsuApplication) getApplication()).getRiddlePool();
+        if (width != pool.getWidth()) {
+            startGenerating(width);
+            return;
+        }
+
+        Trace.beginSection("generate.pool");
+        long start = Metrics.start();
+        Puzzle riddle = pool.poll();
+        Metrics.stop(POOL_LATENCY, start);
+        Trace.endSection();
+        Log.i(TAG, "generate: Riddle pool hits " + pool.getHitCount()
+                + ", misses " + pool.getMissCount());
+
+        if (riddle == null) {
+            // Generated off the main thread like other sizes, the pool is refilled meanwhile
+            Metrics.increment(POOL_MISSES);
+            startGenerating(width);
             return;
         }
 
-        mTimer.cancel();
-        mTimer.purge();
-        mTimer = null;
+        loadGenerated(riddle);
     }
 
-    private boolean startSolutionTimer() {
-        GameMatrix matrix = mBinding.board.dump();
+    /**
+     * Generates a riddle in the background, superseding any riddle still being generated.
+     */
+    private void startGenerating(int width) {
+        setSubtitle("Generating...");
+        mGenerating = true;
+
+        mSolver.generate(width, new BackgroundSolver.GenerateCallback() {
+            @Override
+            public void onGenerated(Puzzle riddle) {
+                loadGenerated(riddle);
+            }
 
-        Solver solver = new Solver(matrix);
-        List<GameMatrix> solutions = solver.solve();
-        if (solutions.size() == 0) {
-            Toast.makeText(this, "No solution available", Toast.LENGTH_SHORT).show();
+            @Override
+            public void onFailed() {
+                mGenerating = false;
+                setSubtitle(mGradeText);
+                Toast.makeText(MainActivity.this, "Failed to generate riddle", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
 
-            return false;
+    private void showBatchProgress(List<WorkInfo> infos) {
+        WorkInfo running = null;
+        WorkInfo finished = null;
+        for (WorkInfo info : infos) {
+            if (!info.getState().isFinished()) {
+                if (running == null || info.getState() == WorkInfo.State.RUNNING) {
+                    running = info;
+                }
+            } else {
+                finished = info;
+            }
         }
-        GameMatrix solution = solutions.get(0);
 
-        mTimer = new Timer();
-        mTimer.scheduleAtFixedRate(new ShowSolutionTask(mBinding.board.dump(), solution), 0, 200);
+        if (running != null) {
+            int progress = running.getProgress().getInt(BatchJobWorker.KEY_PROGRESS, -1);
+            mBinding.batchProgress.setIndeterminate(progress < 0);
+            mBinding.batchProgress.setProgressCompat(Math.max(progress, 0), true);
+            mBinding.batchProgress.setVisibility(View.VISIBLE);
+        } else {
+            mBinding.batchProgress.setVisibility(View.GONE);
+        }
 
-        return true;
+        // Only reported when seen finishing, not again after a configuration change
+        if (mBatchRunning && running == null && finished != null) {
+            if (finished.getState() == WorkInfo.State.SUCCEEDED) {
+                long puzzles = finished.getOutputData().getLong(BatchJobWorker.KEY_PUZZLES, 0);
+                Toast.makeText(this, "Batch job done: " + puzzles + " puzzles", Toast.LENGTH_SHORT).show();
+            } else if (finished.getState() == WorkInfo.State.FAILED) {
+                String error = finished.getOutputData().getString(BatchJobWorker.KEY_ERROR);
+                Toast.makeText(this, "Batch job failed: " + error, Toast.LENGTH_LONG).show();
+            }
+        }
+        mBatchRunning = (running != null);
+    }
+
+    private void loadGenerated(Puzzle riddle) {
+        stopSolution();
+        mGradeText = null;
+        mBinding.board.loadRiddle(Board.of(riddle.getCells()));
+
+        setUiState(UiState.USER_INPUT);
+        showGrade(riddle.getGrade());
+    }
+
+    private void startSolution() {
+        stopSolution();
+
+        mPlaybackPaused = false;
+        solve(mBinding.board.dump(), 0);
+    }
+
+    private void solve(Board puzzle, int position) {
+        mPlaybackPuzzle = puzzle;
+        mPlaybackPosition = position;
+        if (mPlaybackPaused) {
+            mPlayer.pause();
+        } else {
+            mPlayer.resume();
+        }
+
+        // Solved speculatively while the board was edited
+        SolveTrace cached = mChecker.getCachedTrace(puzzle);
+        if (cached != null) {
+            Metrics.increment(CACHED_SOLVES);
+            startPlayback(cached, mChecker.getCachedUniqueness(puzzle), position);
+            return;
+        }
+
+        mStillWorkingShown = false;
+        mSolver.solve(puzzle, SOLVE_TIMEOUT_MS, new BackgroundSolver.Callback() {
+            @Override
+            public void onSolved(SolveTrace trace, Uniqueness uniqueness) {
+                startPlayback(trace, uniqueness, position);
+            }
+
+            @Override
+            public void onNoSolution() {
+                Toast.makeText(MainActivity.this, "No solution available", Toast.LENGTH_SHORT).show();
+
+                mPlaybackPuzzle = null;
+                setUiState(UiState.USER_INPUT);
+            }
+
+            @Override
+            public void onTimeout() {
+                Toast.makeText(MainActivity.this, "Solver timed out", Toast.LENGTH_SHORT).show();
+
+                mPlaybackPuzzle = null;
+                setUiState(UiState.USER_INPUT);
+            }
+
+            @Override
+            public void onStillWorking(long elapsedMs) {
+                if (mStillWorkingShown) {
+                    return;
+                }
+
+                Toast.makeText(MainActivity.this, "Still solving...", Toast.LENGTH_SHORT).show();
+                mStillWorkingShown = true;
+            }
+        });
+    }
+
+    private void startPlayback(SolveTrace trace, Uniqueness uniqueness, int position) {
+        // Only warned about once, not again when a saved playback resumes
+        if (uniqueness == Uniqueness.MULTIPLE && position == 0) {
+            Toast.makeText(this, "Puzzle has more than one solution", Toast.LENGTH_LONG).show();
+        }
+        mPlayer.start(trace, position);
+    }
+
+    /**
+     * Starts checking the edited board in the background, unless it is being played back.
+     */
+    private void scheduleCheck() {
+        if (mUiState != UiState.USER_INPUT) {
+            return;
+        }
+
+        mChecker.check(mBinding.board.dump());
+    }
+
+    private int getPlaybackPosition() {
+        return mPlayer.isActive() ? mPlayer.getPosition() : mPlaybackPosition;
+    }
+
+    private void scheduleAutosave() {
+        mHandler.removeCallbacks(mAutosaveRunnable);
+        mHandler.postDelayed(mAutosaveRunnable, AUTOSAVE_DELAY_MS);
+    }
+
+    private void saveSession() {
+        Autosave.State state = new Autosave.State();
+        state.board = mBinding.board.encode();
+        state.showNotes = mBinding.board.isShowingNotes();
+        state.uiState = mUiState.ordinal();
+
+        if (mPlaybackPuzzle != null) {
+            state.playbackPuzzle = BoardCodec.encode(mPlaybackPuzzle, null);
+        }
+        state.playbackPosition = getPlaybackPosition();
+        state.playbackPaused = mPlaybackPaused;
+        state.playbackSpeed = mPlayer.getSpeed();
+
+        MoveJournal journal = mBinding.board.getJournal();
+        // Moves handed over before are gone from disk if their write failed
+        state.journalFrom = mAutosave.needsFullJournal() ? 0 : journal.getDirtyFrom();
+        state.journalMoves = journal.copyMoves(state.journalFrom);
+        state.journalCursor = journal.getCursor();
+        journal.markSynced();
+
+        mAutosave.save(state);
+    }
+
+    private void restoreSession() {
+        Autosave.State state = mAutosave.load();
+        if (state == null) {
+            return;
+        }
+
+        try {
+            mBinding.board.decode(state.board);
+        } catch (InvalidParameterException e) {
+            Log.w(TAG, "restoreSession: " + e.getMessage());
+            return;
+        }
+        mBinding.board.setShowNotes(state.showNotes);
+        loadJournal(state);
+
+        if (state.uiState >= 0 && state.uiState < UiState.values().length) {
+            mUiState = UiState.values()[state.uiState];
+        }
+        mPlaybackPuzzle = (state.playbackPuzzle != null) ? Board.wrap(BoardCodec.decode(state.playbackPuzzle)) : null;
+        mPlaybackPosition = state.playbackPosition;
+        mPlaybackPaused = state.playbackPaused;
+        mPlayer.setSpeed(state.playbackSpeed);
+    }
+
+    /**
+     * Restores the move history after the process was killed and the board restored from the
+     * instance state. It is taken from the autosave in the background, as long as that has the
+     * same board and no move was made meanwhile.
+     */
+    private void restoreJournal() {
+        byte[] board = mBinding.board.encode();
+        // Kept across configuration changes, so it is loaded even if this activity is gone
+        MoveJournal journal = mBinding.board.getJournal();
+
+        mAutosave.load(state -> {
+            if (state == null || !Arrays.equals(state.board, board) || journal.size() != 0) {
+                Log.w(TAG, "restoreJournal: No autosave matching the board");
+                return;
+            }
+
+            try {
+                journal.load(state.journalMoves, state.journalCursor);
+            } catch (InvalidParameterException e) {
+                Log.w(TAG, "restoreJournal: " + e.getMessage());
+            }
+            if (!isDestroyed()) {
+                updateUndoItems();
+            }
+        });
+    }
+
+    private void loadJournal(Autosave.State state) {
+        try {
+            mBinding.board.getJournal().load(state.journalMoves, state.journalCursor);
+        } catch (InvalidParameterException e) {
+            Log.w(TAG, "loadJournal: " + e.getMessage());
+        }
+        updateUndoItems();
     }
 
     private void setUiState(UiState state) {
         switch (state) {
             case USER_INPUT:
+                setSubtitle(mGradeText);
+
                 mSolveItem.setIcon(R.drawable.ic_check);
                 mSolveItem.setEnabled(true);
+                setPlaybackItemsVisible(false);
+
+                mUiState = state;
+                updateUndoItems();
 
                 mBinding.board.setReadonly(false);
+                scheduleCheck();
 
                 break;
             case SOLVING:
                 mSolveItem.setIcon(R.drawable.ic_stop);
+                mUndoItem.setEnabled(false);
+                mRedoItem.setEnabled(false);
+                mPauseItem.setTitle(mPlaybackPaused ? R.string.item_resume : R.string.item_pause);
+                setPlaybackItemsVisible(true);
 
                 closeKeyboard();
+                mChecker.cancel();
 
                 mBinding.board.setReadonly(true);
 
@@ -288,56 +908,84 @@ public class MainActivity extends AppCompatActivity {
         mUiState = state;
     }
 
-    private void closeKeyboard() {
-        View view = getCurrentFocus();
-        if (view != null) {
-            inputMethodManager.hideSoftInputFromWindow(view.getWindowToken(), 0);
+    private void updateUndoItems() {
+        if (mUndoItem == null || mUiState != UiState.USER_INPUT) {
+            return;
         }
-    }
 
-    class ShowSolutionTask extends TimerTask {
-        private final GameMatrix mGame;
-        private final GameMatrix mSolution;
-        private final int mWidth;
-        private int mIndex = 0;
+        mUndoItem.setEnabled(mBinding.board.canUndo());
+        mRedoItem.setEnabled(mBinding.board.canRedo());
+    }
 
+    private void updateSizeItems() {
+        if (mSize9Item == null) {
+            return;
+        }
 
-        public ShowSolutionTask(GameMatrix game, GameMatrix solution) {
-            super();
+        int width = mBinding.board.getMatrixWidth();
+        mSize9Item.setChecked(width == 9);
+        mSize16Item.setChecked(width == 16);
+        mSize25Item.setChecked(width == 25);
+    }
 
-            mGame = game;
-            mSolution = solution;
+    private void setPlaybackItemsVisible(boolean visible) {
+        mPauseItem.setVisible(visible);
+        mFasterItem.setVisible(visible);
+        mSlowerItem.setVisible(visible);
+        mFinishItem.setVisible(visible);
+    }
 
-            if (game.getSchema().getWidth() != solution.getSchema().getWidth()) {
-                throw new InvalidParameterException("Game and solution widths do not match");
-            }
+    private void setSubtitle(CharSequence subtitle) {
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setSubtitle(subtitle);
+        }
+    }
 
-            mWidth = game.getSchema().getWidth();
+    private void showGrade(Grade grade) {
+        if (grade == null) {
+            return;
         }
 
-        @Override
-        public void run() {
-            int i = mIndex / mWidth;
-            int j = mIndex % mWidth;
-            while (mIndex != mWidth * mWidth && mGame.get(i, j) != 0) {
-                mIndex++;
+        if (grade.isSolvable()) {
+            mGradeText = displayName(grade.getDifficulty());
+            setSubtitle(mGradeText);
+        } else {
+            mGradeText = null;
+            setSubtitle("Unsolvable");
+        }
+    }
 
-                i = mIndex / mWidth;
-                j = mIndex % mWidth;
-            }
-            if (mIndex == mWidth * mWidth) {
-                runOnUiThread(() -> setUiState(UiState.USER_INPUT));
+    /**
+     * Shows whether the edited board can still be solved in place of its difficulty.
+     *
+     * @param uniqueness number of solutions or null if unknown
+     */
+    private void showSolvability(Uniqueness uniqueness) {
+        if (mUiState != UiState.USER_INPUT) {
+            return;
+        }
 
-                stopSolutionTimer();
-                return;
-            }
+        if (uniqueness == null) {
+            setSubtitle(mGradeText);
+        } else if (uniqueness == Uniqueness.NONE) {
+            setSubtitle("Not solvable");
+        } else if (uniqueness == Uniqueness.MULTIPLE) {
+            setSubtitle("Multiple solutions");
+        } else {
+            setSubtitle((mGradeText != null) ? mGradeText : "Solvable");
+        }
+    }
 
-            byte value = mSolution.get(i, j);
-            int finalI = i;
-            int finalJ = j;
-            runOnUiThread(() -> mBinding.board.place(finalI, finalJ, value));
+    static private String displayName(Enum<?> value) {
+        String name = value.name().replace('_', ' ').toLowerCase(Locale.ROOT);
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
 
-            mIndex++;
+    private void closeKeyboard() {
+        View view = getCurrentFocus();
+        if (view != null) {
+            inputMethodManager.hideSoftInputFromWindow(view.getWindowToken(), 0);
         }
     }
 
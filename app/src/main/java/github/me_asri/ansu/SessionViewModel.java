@@ -0,0 +1,24 @@
+package github.me_asri.ansu;
+
+import androidx.lifecycle.ViewModel;
+
+import github.me_asri.ansu.core.MoveJournal;
+
+/**
+ * State of {@link MainActivity} kept in memory across configuration changes. A new instance
+ * after process death tells that it has to be restored from the {@link Autosave}.
+ */
+public class SessionViewModel extends ViewModel {
+    private MoveJournal mJournal = null;
+
+    /**
+     * @return the move journal of the board or null if no activity handed one over yet
+     */
+    public MoveJournal getJournal() {
+        return mJournal;
+    }
+
+    public void setJournal(MoveJournal journal) {
+        mJournal = journal;
+    }
+}
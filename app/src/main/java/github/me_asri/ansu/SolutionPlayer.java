@@ -0,0 +1,309 @@
+package github.me_asri.ansu;
+
+import android.os.Trace;
+import android.view.Choreographer;
+
+import java.util.List;
+
+import github.me_asri.ansu.core.LatencyHistogram;
+import github.me_asri.ansu.core.Metrics;
+import github.me_asri.ansu.core.SolveStep;
+import github.me_asri.ansu.core.SolveTrace;
+import github.me_asri.ansu.core.Technique;
+
+/**
+ * Plays a {@link SolveTrace} back onto a {@link SudokuView}, driven by the main thread
+ * {@link Choreographer}.
+ * <p>
+ * The trace is flattened into primitive arrays once in {@link #start(SolveTrace, int)}, so frames
+ * only index into them. Every frame applies as many steps as the elapsed time and speed allow.
+ * Elimination steps are skipped over without taking time while notes are hidden. All placements
+ * of one playback are journaled as a single move group, so they are undone together.
+ * <p>
+ * Must only be used from the main thread.
+ */
+public class SolutionPlayer implements Choreographer.FrameCallback {
+    static public final float DEFAULT_SPEED = 5;
+    static public final float MIN_SPEED = 1;
+    static public final float MAX_SPEED = 160;
+
+    static private final LatencyHistogram STEP_LATENCY = Metrics.histogram("playback.step");
+
+    public interface Listener {
+        /**
+         * Called after the board reached a new position.
+         *
+         * @param technique technique of the last applied step, null at position 0
+         */
+        void onPosition(int position, Technique technique);
+
+        void onFinished();
+    }
+
+    private final SudokuView mBoard;
+    private final Listener mListener;
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+
+    private int mWidth;
+    private int mStepCount = 0;
+    // Operations of step k are at [mStepStart[k], mStepStart[k + 1]), packed as cell << 5 | digit
+    private int[] mStepStart = new int[1];
+    private int[] mOps = new int[0];
+    private boolean[] mPlacement = new boolean[0];
+    private Technique[] mTechnique = new Technique[0];
+
+    private int mPosition = 0;
+    private float mSpeed = DEFAULT_SPEED;
+    private double mBudget = 0;
+    private long mLastFrameNanos = 0;
+    private boolean mActive = false;
+    private boolean mPaused = false;
+    private boolean mScheduled = false;
+
+    public SolutionPlayer(SudokuView board, Listener listener) {
+        mBoard = board;
+        mListener = listener;
+    }
+
+    /**
+     * Starts playing the trace of the puzzle currently on the board.
+     *
+     * @param position steps to apply instantly before playback continues, used to resume
+     */
+    public void start(SolveTrace trace, int position) {
+        stop();
+        load(trace);
+
+        mActive = true;
+        mBoard.beginMoveGroup();
+        mPosition = 0;
+        applyUntil(Math.max(0, Math.min(position, mStepCount)));
+        // Show the first step right away
+        mBudget = 1;
+        mLastFrameNanos = 0;
+
+        if (mPosition == mStepCount) {
+            finish();
+        } else if (!mPaused) {
+            schedule();
+        }
+    }
+
+    /**
+     * Stops playback, leaving the board as it is.
+     */
+    public void stop() {
+        if (mActive) {
+            mBoard.endMoveGroup();
+        }
+
+        mActive = false;
+        unschedule();
+    }
+
+    public void pause() {
+        mPaused = true;
+        unschedule();
+    }
+
+    public void resume() {
+        mPaused = false;
+        mLastFrameNanos = 0;
+        if (mActive) {
+            schedule();
+        }
+    }
+
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    public boolean isActive() {
+        return mActive;
+    }
+
+    /**
+     * Sets the playback speed, clamped to [{@link #MIN_SPEED}, {@link #MAX_SPEED}].
+     *
+     * @param stepsPerSecond visible steps applied per second
+     */
+    public void setSpeed(float stepsPerSecond) {
+        mSpeed = Math.max(MIN_SPEED, Math.min(stepsPerSecond, MAX_SPEED));
+    }
+
+    public float getSpeed() {
+        return mSpeed;
+    }
+
+    public int getPosition() {
+        return mPosition;
+    }
+
+    public int getStepCount() {
+        return mStepCount;
+    }
+
+    /**
+     * Moves the board to the given step, applying or reverting the steps in between.
+     */
+    public void seek(int position) {
+        if (!mActive) {
+            return;
+        }
+
+        position = Math.max(0, Math.min(position, mStepCount));
+        if (position >= mPosition) {
+            applyUntil(position);
+        } else {
+            revertUntil(position);
+        }
+        mBudget = 0;
+
+        if (mPosition == mStepCount) {
+            finish();
+        }
+    }
+
+    /**
+     * Applies all remaining steps at once.
+     */
+    public void finish() {
+        if (!mActive) {
+            return;
+        }
+
+        applyUntil(mStepCount);
+        stop();
+        mListener.onFinished();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mScheduled = false;
+        if (!mActive || mPaused) {
+            return;
+        }
+
+        if (mLastFrameNanos != 0) {
+            mBudget += (frameTimeNanos - mLastFrameNanos) * 1e-9 * mSpeed;
+        }
+        mLastFrameNanos = frameTimeNanos;
+
+        int visible = (int) mBudget;
+        if (visible > 0) {
+            mBudget -= visible;
+
+            Trace.beginSection("SolutionPlayer.frame");
+            int start = mPosition;
+            while (visible > 0 && mPosition < mStepCount) {
+                long stepStart = Metrics.start();
+                boolean shown = apply(mPosition++);
+                Metrics.stop(STEP_LATENCY, stepStart);
+
+                if (shown) {
+                    visible--;
+                }
+            }
+            if (mPosition != start) {
+                mListener.onPosition(mPosition, mTechnique[mPosition - 1]);
+            }
+            Trace.endSection();
+        }
+
+        if (mPosition == mStepCount) {
+            finish();
+        } else {
+            schedule();
+        }
+    }
+
+    private void load(SolveTrace trace) {
+        List<SolveStep> steps = trace.getSteps();
+        mWidth = mBoard.getMatrixWidth();
+
+        int opCount = 0;
+        for (SolveStep step : steps) {
+            opCount += step.isPlacement() ? 1 : step.getEliminationCount();
+        }
+
+        mStepCount = steps.size();
+        mStepStart = new int[mStepCount + 1];
+        mOps = new int[opCount];
+        mPlacement = new boolean[mStepCount];
+        mTechnique = new Technique[mStepCount];
+
+        int op = 0;
+        for (int k = 0; k < mStepCount; k++) {
+            SolveStep step = steps.get(k);
+            mStepStart[k] = op;
+            mPlacement[k] = step.isPlacement();
+            mTechnique[k] = step.getTechnique();
+
+            if (step.isPlacement()) {
+                mOps[op++] = step.getCell() << 5 | step.getDigit();
+            } else {
+                for (int e = 0; e < step.getEliminationCount(); e++) {
+                    mOps[op++] = step.getEliminatedCell(e) << 5 | step.getEliminatedDigit(e);
+                }
+            }
+        }
+        mStepStart[mStepCount] = op;
+    }
+
+    /**
+     * @return true if the step changed something visible
+     */
+    private boolean apply(int step) {
+        for (int op = mStepStart[step]; op < mStepStart[step + 1]; op++) {
+            int cell = mOps[op] >>> 5;
+            int digit = mOps[op] & 0x1F;
+            if (mPlacement[step]) {
+                mBoard.place(cell / mWidth, cell % mWidth, (byte) digit);
+            } else {
+                mBoard.eliminateCandidates(cell / mWidth, cell % mWidth, 1 << (digit - 1));
+            }
+        }
+
+        return mPlacement[step] || mBoard.isShowingNotes();
+    }
+
+    private void revert(int step) {
+        for (int op = mStepStart[step]; op < mStepStart[step + 1]; op++) {
+            int cell = mOps[op] >>> 5;
+            int digit = mOps[op] & 0x1F;
+            if (mPlacement[step]) {
+                mBoard.place(cell / mWidth, cell % mWidth, (byte) 0);
+            } else {
+                mBoard.restoreCandidates(cell / mWidth, cell % mWidth, 1 << (digit - 1));
+            }
+        }
+    }
+
+    private void applyUntil(int position) {
+        while (mPosition < position) {
+            apply(mPosition++);
+        }
+        mListener.onPosition(mPosition, mPosition > 0 ? mTechnique[mPosition - 1] : null);
+    }
+
+    private void revertUntil(int position) {
+        while (mPosition > position) {
+            revert(--mPosition);
+        }
+        mListener.onPosition(mPosition, mPosition > 0 ? mTechnique[mPosition - 1] : null);
+    }
+
+    private void schedule() {
+        if (mScheduled) {
+            return;
+        }
+
+        mScheduled = true;
+        mChoreographer.postFrameCallback(this);
+    }
+
+    private void unschedule() {
+        mScheduled = false;
+        mChoreographer.removeFrameCallback(this);
+    }
+}
@@ -0,0 +1,197 @@
+package github.me_asri.ansu;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import github.me_asri.ansu.core.BitSolver;
+import github.me_asri.ansu.core.Board;
+import github.me_asri.ansu.core.CancellationToken;
+import github.me_asri.ansu.core.LogicSolver;
+import github.me_asri.ansu.core.SolveTrace;
+import github.me_asri.ansu.core.Uniqueness;
+
+/**
+ * Speculatively solves the board in the background while it is being edited.
+ * <p>
+ * Checks are debounced, so a burst of edits only solves the last board, and a new check cancels
+ * the one in progress. The number of solutions is reported first, the logic trace used for
+ * playback follows. Results are cached by board content, so undoing back to a board seen before
+ * reports instantly and solving it needs no search at all. Everything but the search runs on the
+ * main thread.
+ */
+public class SolvabilityChecker {
+    static private final String TAG = SolvabilityChecker.class.toString();
+
+    // About two frames, so typing does not start a search per keystroke
+    static private final long DEBOUNCE_MS = 32;
+    static private final long CHECK_TIMEOUT_MS = 5000;
+    static private final int CACHE_SIZE = 16;
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Listener mListener;
+
+    // Keyed by snapshots, which are never written to
+    private final Map<Board, Result> mCache = new LinkedHashMap<Board, Result>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Board, Result> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private Board mPending = null;
+    private final Runnable mCheckRunnable = this::startCheck;
+    private CancellationToken mToken = null;
+
+    // Only used on the executor thread
+    private BitSolver mBitSolver = null;
+    private LogicSolver mLogicSolver = null;
+
+    public interface Listener {
+        /**
+         * Called on the main thread with the number of solutions of the board last checked.
+         *
+         * @param uniqueness number of solutions or null if the check timed out
+         */
+        void onChecked(Uniqueness uniqueness);
+    }
+
+    static private class Result {
+        final Uniqueness uniqueness;
+        // Null until the logic solver is done
+        final SolveTrace trace;
+
+        Result(Uniqueness uniqueness, SolveTrace trace) {
+            this.uniqueness = uniqueness;
+            this.trace = trace;
+        }
+    }
+
+    public SolvabilityChecker(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Checks the given board once no further board was passed for a short while. A cached
+     * result is reported right away.
+     */
+    public void check(Board board) {
+        cancel();
+
+        Result cached = mCache.get(board);
+        if (cached != null) {
+            mListener.onChecked(cached.uniqueness);
+            if (cached.trace != null || cached.uniqueness == Uniqueness.NONE) {
+                return;
+            }
+        }
+
+        mPending = board.snapshot();
+        mHandler.postDelayed(mCheckRunnable, DEBOUNCE_MS);
+    }
+
+    /**
+     * @return the trace of a board solved before or null if it is not cached
+     */
+    public SolveTrace getCachedTrace(Board board) {
+        Result cached = mCache.get(board);
+        return (cached != null) ? cached.trace : null;
+    }
+
+    /**
+     * @return the number of solutions of a board checked before or null if it is not cached
+     */
+    public Uniqueness getCachedUniqueness(Board board) {
+        Result cached = mCache.get(board);
+        return (cached != null) ? cached.uniqueness : null;
+    }
+
+    /**
+     * Drops the pending check and cancels the one in progress. Results already found are kept.
+     */
+    public void cancel() {
+        mHandler.removeCallbacks(mCheckRunnable);
+        mPending = null;
+
+        if (mToken != null) {
+            mToken.cancel();
+            mToken = null;
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        mExecutor.shutdownNow();
+    }
+
+    private void startCheck() {
+        Board board = mPending;
+        mPending = null;
+        if (board == null) {
+            return;
+        }
+
+        CancellationToken token = new CancellationToken(CHECK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        mToken = token;
+
+        mExecutor.execute(() -> {
+            // Superseded while queued
+            if (token.isCancelled()) {
+                return;
+            }
+
+            byte[] cells = board.toArray();
+            int width = board.getWidth();
+            if (mBitSolver == null || mBitSolver.getWidth() != width) {
+                mBitSolver = BitSolver.forWidth(width);
+                mLogicSolver = LogicSolver.forWidth(width);
+            }
+            mBitSolver.setCancellationToken(token);
+            mLogicSolver.setCancellationToken(token);
+
+            try {
+                Uniqueness uniqueness = mBitSolver.checkUniqueness(cells, null);
+                deliver(token, board, new Result(uniqueness, null));
+                if (uniqueness == Uniqueness.NONE) {
+                    return;
+                }
+
+                SolveTrace trace = mLogicSolver.solve(cells);
+                deliver(token, board, new Result(uniqueness, trace));
+            } catch (CancellationException e) {
+                Log.i(TAG, "check: " + e.getMessage());
+
+                if (token.isTimedOut()) {
+                    mHandler.post(() -> {
+                        if (token == mToken) {
+                            mListener.onChecked(null);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void deliver(CancellationToken token, Board board, Result result) {
+        mHandler.post(() -> {
+            Result cached = mCache.get(board);
+            // A trace found for the board before is kept over a bare count
+            if (cached == null || cached.trace == null) {
+                mCache.put(board, result);
+            }
+
+            // Superseded results still fill the cache but are not reported
+            if (token == mToken) {
+                mListener.onChecked(result.uniqueness);
+            }
+        });
+    }
+}
@@ -1,70 +1,71 @@
 package github.me_asri.ansu;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import android.os.Trace;
+
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
 import java.security.InvalidParameterException;
+import java.util.Random;
 
-import de.sfuhrm.sudoku.GameMatrix;
-import de.sfuhrm.sudoku.GameMatrixFactory;
-import de.sfuhrm.sudoku.GameSchema;
+import github.me_asri.ansu.core.Board;
+import github.me_asri.ansu.core.LatencyHistogram;
+import github.me_asri.ansu.core.Metrics;
+import github.me_asri.ansu.core.Puzzle;
+import github.me_asri.ansu.core.PuzzleLibrary;
+import github.me_asri.ansu.core.SdkFormat;
 
+/**
+ * Traced and measured entry points to the puzzle file formats of {@code core}.
+ */
 public class SudokuHelper {
-    static public GameMatrix importFile(GameSchema gameSchema, InputStream input) throws IOException {
-        GameMatrix gameMatrix = new GameMatrixFactory().newGameMatrix(gameSchema);
-
-        BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-        int i = 0;
-        while (reader.ready()) {
-            String line = reader.readLine();
-            if (line.charAt(0) == '#') {
-                continue; // Ignore comments
-            }
+    static private final LatencyHistogram IMPORT_LATENCY = Metrics.histogram("import");
+    static private final LatencyHistogram EXPORT_LATENCY = Metrics.histogram("export");
 
-            int lineLen = line.length();
-            if (lineLen > gameSchema.getWidth()) {
-                throw new InvalidParameterException("Invalid file");
-            }
-            for (int j = 0; j < lineLen; j++) {
-                char c = line.charAt(j);
+    /**
+     * Imports the first puzzle of a file, detecting whether it is 9x9, 16x16 or 25x25.
+     */
+    static public Board importFile(InputStream input) throws IOException {
+        Trace.beginSection("import");
+        long start = Metrics.start();
+        try {
+            return SdkFormat.read(input);
+        } finally {
+            Metrics.stop(IMPORT_LATENCY, start);
+            Trace.endSection();
+        }
+    }
 
-                if (c == '.') {
-                    gameMatrix.set(i, j, (byte) 0);
-                } else {
-                    byte value;
-                    try {
-                        value = Byte.parseByte(String.valueOf(c));
-                    } catch (NumberFormatException nfe) {
-                        throw new InvalidParameterException("Invalid file");
-                    }
-                    gameMatrix.set(i, j, value);
-                }
+    /**
+     * Picks a random puzzle of a {@link PuzzleLibrary}, along with its grade if stored.
+     */
+    static public Puzzle importLibrary(FileChannel channel, Random random) throws IOException {
+        Trace.beginSection("import");
+        long start = Metrics.start();
+        try (PuzzleLibrary library = PuzzleLibrary.open(channel)) {
+            if (library.size() == 0) {
+                throw new InvalidParameterException("Empty library");
             }
 
-            i++;
+            return library.get(random.nextInt(library.size()));
+        } finally {
+            Metrics.stop(IMPORT_LATENCY, start);
+            Trace.endSection();
         }
-
-        return gameMatrix;
     }
 
-    static public void exportFile(GameMatrix gameMatrix, OutputStream output) throws IOException {
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output));
-        int width = gameMatrix.getSchema().getWidth();
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < width; j++) {
-                byte value = gameMatrix.get(i, j);
-                if (value == 0) {
-                    writer.write(".");
-                } else {
-                    writer.write(Byte.toString(value));
-                }
-            }
-            writer.write('\n');
+    /**
+     * @see SdkFormat#write(Board, OutputStream)
+     */
+    static public void exportFile(Board board, OutputStream output) throws IOException {
+        Trace.beginSection("export");
+        long start = Metrics.start();
+        try {
+            SdkFormat.write(board, output);
+        } finally {
+            Metrics.stop(EXPORT_LATENCY, start);
+            Trace.endSection();
         }
-        writer.flush();
     }
 }
@@ -1,44 +1,110 @@
 package github.me_asri.ansu;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
-import android.content.res.ColorStateList;
-import android.graphics.Color;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcelable;
-import android.text.Editable;
-import android.text.InputFilter;
+import android.os.Trace;
 import android.text.InputType;
-import android.text.Spanned;
-import android.text.TextWatcher;
 import android.util.AttributeSet;
-import android.widget.EditText;
-import android.widget.TableLayout;
-import android.widget.TableRow;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.inputmethod.BaseInputConnection;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputConnection;
+import android.view.inputmethod.InputMethodManager;
 
 import androidx.annotation.Nullable;
-import androidx.core.content.res.ResourcesCompat;
+import androidx.core.content.ContextCompat;
+
+import java.util.Arrays;
+
+import github.me_asri.ansu.core.Board;
+import github.me_asri.ansu.core.BoardCodec;
+import github.me_asri.ansu.core.CandidateGrid;
+import github.me_asri.ansu.core.ConflictTracker;
+import github.me_asri.ansu.core.Grids;
+import github.me_asri.ansu.core.LatencyHistogram;
+import github.me_asri.ansu.core.Metrics;
+import github.me_asri.ansu.core.MoveJournal;
+import github.me_asri.ansu.core.PuzzleReader;
+
+/**
+ * Sudoku board drawn in a single {@link #onDraw(Canvas)} pass.
+ * <p>
+ * Digits are entered into the selected cell through the soft keyboard or a hardware keyboard.
+ * Boards up to 25x25 are supported, values above 9 are shown and entered as letters starting
+ * with {@code A} for 10. Notes are left out when the cells are too small to read them.
+ */
+public class SudokuView extends View {
+    static private final int DEFAULT_WIDTH = 9;
+    // Smallest text size in dp notes are drawn at
+    static private final float MIN_NOTE_TEXT_DP = 7;
+
+    static private final String BUNDLE_KEY_SUPER = "super";
+    static private final String BUNDLE_KEY_BOARD = "board";
+    static private final String BUNDLE_KEY_NOTES = "show_notes";
+
+    static private final int NO_SELECTION = -1;
+
+    static private final LatencyHistogram RELOAD_LATENCY = Metrics.histogram("view.reload_tiles");
+    static private final LatencyHistogram LAYOUT_LATENCY = Metrics.histogram("view.layout");
+
+    static private final String[] DIGITS = new String[PuzzleReader.MAX_WIDTH + 1];
+
+    static {
+        for (int i = 1; i < DIGITS.length; i++) {
+            DIGITS[i] = String.valueOf(Character.toUpperCase(Character.forDigit(i, DIGITS.length)));
+        }
+    }
+
+    private int mWidth = 0;
+    private int mBlockWidth;
+
+    private Board mGivens;
+    private Board mAnswers;
+
+    // Mirrors mAnswers
+    private ConflictTracker mTracker;
+    private CandidateGrid mCandidates;
 
-import java.security.InvalidParameterException;
+    private MoveJournal mJournal = new MoveJournal();
+    private final MoveJournal.Target mJournalTarget = this::applyMove;
+    // Candidate journal position before every move, eliminations after it depend on the move
+    private int[] mMoveMarks = new int[64];
 
-import de.sfuhrm.sudoku.GameMatrix;
-import de.sfuhrm.sudoku.GameMatrixFactory;
-import de.sfuhrm.sudoku.GameSchemas;
+    private final Paint mLinePaint = new Paint();
+    private final Paint mThickLinePaint = new Paint();
+    private final Paint mLockedPaint = new Paint();
+    private final Paint mSelectedPaint = new Paint();
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mConflictTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mNotePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
 
-public class SudokuView extends TableLayout {
-    static public final int MATRIX_WIDTH = GameSchemas.SCHEMA_9X9.getWidth();
-    static public final int BLOCK_WIDTH = GameSchemas.SCHEMA_9X9.getBlockWidth();
+    private float mCellSize;
+    private float mTextOffsetY;
+    private float mNoteOffsetY;
+    private boolean mNotesFit;
 
-    static private final String BUNDLE_KEY_GAME = "game_array";
-    static private final String BUNDLE_KEY_ANS = "answer_array";
+    private int mSelected = NO_SELECTION;
+    private boolean mReadonly = false;
+    private boolean mShowNotes = false;
 
-    private final GameMatrix mGameMatrix = new GameMatrixFactory().newGameMatrix(GameSchemas.SCHEMA_9X9);
-    private final GameMatrix mAnswerMatrix = new GameMatrixFactory().newGameMatrix(GameSchemas.SCHEMA_9X9);
+    private InputMethodManager mInputMethodManager;
 
-    private final EditText[][] mTiles = new EditText[MATRIX_WIDTH][MATRIX_WIDTH];
+    private OnChangeListener mChangeListener = null;
 
-    private boolean mIgnoreCheck = false;
+    public interface OnChangeListener {
+        /**
+         * Called whenever the values or locks of the board changed.
+         */
+        void onBoardChanged(SudokuView view);
+    }
 
     public SudokuView(Context context) {
         super(context);
@@ -51,277 +117,616 @@ public class SudokuView extends TableLayout {
     }
 
     private void init(Context context) {
-        inflate(context, R.layout.sudoku_board, this);
-        createBoard(context);
+        mInputMethodManager = (InputMethodManager) context.getSystemService(Context.INPUT_METHOD_SERVICE);
+
+        setFocusable(true);
+        setFocusableInTouchMode(true);
+
+        int lineColor = ContextCompat.getColor(context, R.color.board_line);
+
+        mLinePaint.setColor(lineColor);
+        mLinePaint.setStrokeWidth(dp(0.5f));
+
+        mThickLinePaint.setColor(lineColor);
+        mThickLinePaint.setStrokeWidth(dp(2.5f));
+
+        mLockedPaint.setColor(ContextCompat.getColor(context, R.color.board_locked));
+        mSelectedPaint.setColor(ContextCompat.getColor(context, R.color.board_selected));
+
+        TypedArray attrs = context.obtainStyledAttributes(new int[]{android.R.attr.textColorPrimary});
+        mTextPaint.setColor(attrs.getColor(0, 0xFF000000));
+        attrs.recycle();
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+
+        mConflictTextPaint.set(mTextPaint);
+        mConflictTextPaint.setColor(ContextCompat.getColor(context, R.color.board_conflict));
+
+        mNotePaint.set(mTextPaint);
+        mNotePaint.setColor(lineColor);
+
+        setWidth(DEFAULT_WIDTH);
     }
 
-    private void createBoard(Context context) {
-        for (int i = 0; i < BLOCK_WIDTH; i++) {
-            TableRow row = new TableRow(context);
+    /**
+     * Switches the board to another size, clearing it and its move history if the size changes.
+     */
+    private void setWidth(int width) {
+        if (width == mWidth) {
+            return;
+        }
+
+        mWidth = width;
+        mBlockWidth = Grids.blockWidth(width);
 
-            for (int j = 0; j < BLOCK_WIDTH; j++) {
-                EditText[][] tilesCreated = new EditText[BLOCK_WIDTH][BLOCK_WIDTH];
-                TableLayout block = createBlock(context, i, j, tilesCreated);
+        mGivens = new Board(width);
+        mAnswers = new Board(width);
+        mTracker = new ConflictTracker(mBlockWidth);
+        mCandidates = new CandidateGrid(mTracker);
 
-                block.setPadding(dp(1), dp(1), dp(1), dp(1));
-                block.setBackground(ResourcesCompat.getDrawable(getResources(), R.drawable.shape_border_thick, null));
+        // Moves recorded on the old size do not apply anymore
+        mJournal.clear();
+        mSelected = NO_SELECTION;
 
-                for (int x = 0; x < BLOCK_WIDTH; x++) {
-                    System.arraycopy(tilesCreated[x], 0, mTiles[i * BLOCK_WIDTH + x], j * BLOCK_WIDTH, BLOCK_WIDTH);
+        updateMetrics();
+        requestLayout();
+        // The keyboard type depends on the size
+        mInputMethodManager.restartInput(this);
+    }
+
+    /**
+     * @return number of cells per row
+     */
+    public int getMatrixWidth() {
+        return mWidth;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int desired = (int) dp(40) * DEFAULT_WIDTH;
+
+        int width = resolveSize(desired + getPaddingLeft() + getPaddingRight(), widthMeasureSpec)
+                - getPaddingLeft() - getPaddingRight();
+        int height = resolveSize(desired + getPaddingTop() + getPaddingBottom(), heightMeasureSpec)
+                - getPaddingTop() - getPaddingBottom();
+        int size = Math.min(width, height);
+
+        setMeasuredDimension(size + getPaddingLeft() + getPaddingRight(),
+                size + getPaddingTop() + getPaddingBottom());
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+
+        updateMetrics();
+    }
+
+    private void updateMetrics() {
+        Trace.beginSection("SudokuView.layout");
+        long start = Metrics.start();
+        try {
+            updateTextMetrics();
+        } finally {
+            Metrics.stop(LAYOUT_LATENCY, start);
+            Trace.endSection();
+        }
+    }
+
+    private void updateTextMetrics() {
+        mCellSize = (float) (getWidth() - getPaddingLeft() - getPaddingRight()) / mWidth;
+
+        mTextPaint.setTextSize(mCellSize * 0.6f);
+        mConflictTextPaint.setTextSize(mCellSize * 0.6f);
+
+        Paint.FontMetrics metrics = mTextPaint.getFontMetrics();
+        mTextOffsetY = (mCellSize - metrics.ascent - metrics.descent) / 2;
+
+        float noteSize = mCellSize / mBlockWidth;
+        mNotePaint.setTextSize(noteSize * 0.8f);
+        metrics = mNotePaint.getFontMetrics();
+        mNoteOffsetY = (noteSize - metrics.ascent - metrics.descent) / 2;
+        mNotesFit = noteSize * 0.8f >= dp(MIN_NOTE_TEXT_DP);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        float left = getPaddingLeft();
+        float top = getPaddingTop();
+        float boardSize = mCellSize * mWidth;
+
+        for (int i = 0; i < mWidth; i++) {
+            for (int j = 0; j < mWidth; j++) {
+                float x = left + j * mCellSize;
+                float y = top + i * mCellSize;
+
+                int cell = i * mWidth + j;
+                if (cell == mSelected) {
+                    canvas.drawRect(x, y, x + mCellSize, y + mCellSize, mSelectedPaint);
+                } else if (mGivens.get(cell) != 0) {
+                    canvas.drawRect(x, y, x + mCellSize, y + mCellSize, mLockedPaint);
                 }
 
-                row.addView(block);
+                byte value = mTracker.get(cell);
+                if (value != 0) {
+                    Paint paint = mTracker.isConflict(cell) ? mConflictTextPaint : mTextPaint;
+                    canvas.drawText(DIGITS[value], x + mCellSize / 2, y + mTextOffsetY, paint);
+                } else if (mShowNotes && mNotesFit) {
+                    drawNotes(canvas, x, y, mCandidates.get(cell));
+                }
             }
+        }
+
+        for (int k = 0; k <= mWidth; k++) {
+            Paint paint = (k % mBlockWidth == 0) ? mThickLinePaint : mLinePaint;
+            float offset = k * mCellSize;
 
-            addView(row);
+            canvas.drawLine(left + offset, top, left + offset, top + boardSize, paint);
+            canvas.drawLine(left, top + offset, left + boardSize, top + offset, paint);
         }
+    }
 
-        invalidate();
+    private void drawNotes(Canvas canvas, float x, float y, int candidates) {
+        float noteSize = mCellSize / mBlockWidth;
+        while (candidates != 0) {
+            int digit = Integer.numberOfTrailingZeros(candidates) + 1;
+            candidates &= candidates - 1;
+
+            int row = (digit - 1) / mBlockWidth;
+            int col = (digit - 1) % mBlockWidth;
+            canvas.drawText(DIGITS[digit], x + (col + 0.5f) * noteSize, y + row * noteSize + mNoteOffsetY, mNotePaint);
+        }
     }
 
-    private TableLayout createBlock(Context context, int row, int col, EditText[][] tilesCreated) {
-        TableLayout table = new TableLayout(context);
-        for (int i = 0; i < BLOCK_WIDTH; i++) {
-            TableRow tableRow = new TableRow(context);
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (event.getAction() == MotionEvent.ACTION_DOWN) {
+            return true;
+        }
+        if (event.getAction() != MotionEvent.ACTION_UP) {
+            return super.onTouchEvent(event);
+        }
 
-            for (int j = 0; j < BLOCK_WIDTH; j++) {
-                EditText tile = new EditText(context);
+        int i = (int) ((event.getY() - getPaddingTop()) / mCellSize);
+        int j = (int) ((event.getX() - getPaddingLeft()) / mCellSize);
+        if (i < 0 || i >= mWidth || j < 0 || j >= mWidth) {
+            return true;
+        }
 
-                tile.setWidth(dp(40));
-                tile.setHeight(dp(40));
-                tile.setTextAlignment(TEXT_ALIGNMENT_CENTER);
+        select(i * mWidth + j);
+        if (mSelected != NO_SELECTION) {
+            requestFocus();
+            mInputMethodManager.showSoftInput(this, 0);
+        }
+        performClick();
 
-                tile.setBackground(ResourcesCompat.getDrawable(getResources(), R.drawable.shape_border, null));
+        return true;
+    }
 
-                tile.setFilters(new InputFilter[]{
-                        new SudokuInputFilter()
-                });
-                tile.addTextChangedListener(new SudokuTextWatcher(tile, (row * BLOCK_WIDTH) + i, (col * BLOCK_WIDTH) + j));
+    @Override
+    public boolean onCheckIsTextEditor() {
+        return !mReadonly;
+    }
 
-                if (tilesCreated != null) {
-                    tilesCreated[i][j] = tile;
+    @Override
+    public InputConnection onCreateInputConnection(EditorInfo outAttrs) {
+        // Values above 9 need letters
+        outAttrs.inputType = (mWidth <= 9) ? InputType.TYPE_CLASS_NUMBER
+                : InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_NO_SUGGESTIONS;
+        outAttrs.imeOptions = EditorInfo.IME_FLAG_NO_EXTRACT_UI | EditorInfo.IME_ACTION_DONE;
+
+        return new BaseInputConnection(this, false) {
+            @Override
+            public boolean commitText(CharSequence text, int newCursorPosition) {
+                for (int k = 0; k < text.length(); k++) {
+                    enterDigit(Character.digit(text.charAt(k), mWidth + 1));
                 }
+                return true;
+            }
 
-                tableRow.addView(tile);
+            @Override
+            public boolean deleteSurroundingText(int beforeLength, int afterLength) {
+                enterDigit(0);
+                return true;
             }
+        };
+    }
 
-            table.addView(tableRow);
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+        if (keyCode >= KeyEvent.KEYCODE_0 && keyCode <= KeyEvent.KEYCODE_9) {
+            enterDigit(keyCode - KeyEvent.KEYCODE_0);
+            return true;
+        }
+        if (keyCode >= KeyEvent.KEYCODE_NUMPAD_0 && keyCode <= KeyEvent.KEYCODE_NUMPAD_9) {
+            enterDigit(keyCode - KeyEvent.KEYCODE_NUMPAD_0);
+            return true;
         }
+        if (keyCode >= KeyEvent.KEYCODE_A && keyCode < KeyEvent.KEYCODE_A + mWidth - 9) {
+            enterDigit(10 + keyCode - KeyEvent.KEYCODE_A);
+            return true;
+        }
+        if (keyCode == KeyEvent.KEYCODE_DEL || keyCode == KeyEvent.KEYCODE_FORWARD_DEL) {
+            enterDigit(0);
+            return true;
+        }
+
+        return super.onKeyDown(keyCode, event);
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, @Nullable Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
 
-        return table;
+        if (!gainFocus) {
+            select(NO_SELECTION);
+        }
     }
 
-    @SuppressLint("SetTextI18n")
     public void place(int i, int j, byte value) {
-        mTiles[i][j].setText(Integer.toString(value));
-        mAnswerMatrix.set(i, j, value);
+        setValue(i * mWidth + j, value);
     }
 
-    public void loadRiddle(GameMatrix input) {
-        if (input.getSchema() != GameSchemas.SCHEMA_9X9) {
-            throw new InvalidParameterException("Unsupported GameMatrix schema");
-        }
+    /**
+     * Loads a riddle of any supported size, switching the board to that size if needed.
+     */
+    public void loadRiddle(Board riddle) {
+        setWidth(riddle.getWidth());
 
-        byte[][] array = input.getArray();
-        mGameMatrix.setAll(array);
-        mAnswerMatrix.setAll(array);
+        recordBulk(riddle, riddle);
+        mGivens.setAll(riddle);
+        mAnswers.setAll(riddle);
 
         reloadTiles();
+        notifyChanged();
     }
 
-    public GameMatrix dump() {
-        GameMatrix copy = new GameMatrixFactory().newGameMatrix(GameSchemas.SCHEMA_9X9);
-        copy.setAll(mAnswerMatrix.getArray());
+    /**
+     * Reverts the last move or bulk operation.
+     *
+     * @return false if there was nothing to undo
+     */
+    public boolean undo() {
+        if (!mJournal.undo(mJournalTarget)) {
+            return false;
+        }
 
-        return copy;
+        revertEliminations(mJournal.getCursor());
+        return true;
     }
 
-    private void setTileReadonly(EditText editText, boolean state) {
-        editText.setFocusable(!state);
-        editText.setFocusableInTouchMode(!state);
-        editText.setInputType((state) ? InputType.TYPE_NULL : InputType.TYPE_CLASS_NUMBER);
+    public boolean redo() {
+        return mJournal.redo(mJournalTarget);
     }
 
-    private void setTileLock(EditText editText, boolean state) {
-        if (state) {
-            setTileReadonly(editText, true);
-            editText.setBackground(ResourcesCompat.getDrawable(getResources(), R.drawable.shape_filled_border, null));
-        } else {
-            setTileReadonly(editText, false);
-            editText.setBackground(ResourcesCompat.getDrawable(getResources(), R.drawable.shape_border, null));
+    public boolean canUndo() {
+        return mJournal.canUndo();
+    }
+
+    public boolean canRedo() {
+        return mJournal.canRedo();
+    }
+
+    /**
+     * Makes the following moves undo as one until {@link #endMoveGroup()}.
+     */
+    public void beginMoveGroup() {
+        mJournal.beginGroup();
+    }
+
+    public void endMoveGroup() {
+        mJournal.endGroup();
+    }
+
+    public MoveJournal getJournal() {
+        return mJournal;
+    }
+
+    /**
+     * Replaces the move journal, for one kept across configuration changes. Its moves have to
+     * lead to the current board.
+     */
+    public void setJournal(MoveJournal journal) {
+        mJournal = journal;
+        // Its moves were made before any elimination of this board
+        Arrays.fill(mMoveMarks, 0);
+    }
+
+    public void setOnChangeListener(OnChangeListener listener) {
+        mChangeListener = listener;
+    }
+
+    /**
+     * @return the board values and locked cells in {@link BoardCodec} format
+     */
+    public byte[] encode() {
+        return BoardCodec.encode(mAnswers, mGivens);
+    }
+
+    /**
+     * Restores a board returned by {@link #encode()}.
+     */
+    public void decode(byte[] data) {
+        setWidth(BoardCodec.width(data));
+
+        byte[] cells = new byte[mWidth * mWidth];
+        byte[] givens = new byte[mWidth * mWidth];
+        BoardCodec.decode(data, cells, givens);
+
+        mGivens.setAll(Board.wrap(givens));
+        mAnswers.setAll(Board.wrap(cells));
+
+        reloadTiles();
+    }
+
+    /**
+     * @return the current values, without copying them until the board is edited next
+     */
+    public Board dump() {
+        return mAnswers.snapshot();
+    }
+
+    /**
+     * Removes candidate digits from the notes of a cell.
+     *
+     * @param mask digits to remove, digit v at bit v - 1
+     */
+    public void eliminateCandidates(int i, int j, int mask) {
+        mCandidates.eliminate(i * mWidth + j, mask);
+
+        if (mShowNotes && mNotesFit) {
+            invalidateCell(i * mWidth + j);
         }
     }
 
+    /**
+     * Brings back candidate digits removed by {@link #eliminateCandidates(int, int, int)}.
+     *
+     * @param mask digits to restore, digit v at bit v - 1
+     */
+    public void restoreCandidates(int i, int j, int mask) {
+        mCandidates.restore(i * mWidth + j, mask);
+
+        if (mShowNotes && mNotesFit) {
+            invalidateCell(i * mWidth + j);
+        }
+    }
+
+    public void setShowNotes(boolean state) {
+        mShowNotes = state;
+
+        invalidate();
+    }
+
+    public boolean isShowingNotes() {
+        return mShowNotes;
+    }
+
+    /**
+     * @return candidate digits of a cell as bitmask, digit v at bit v - 1
+     */
+    public int getCandidates(int i, int j) {
+        return mCandidates.get(i * mWidth + j);
+    }
+
     public void setReadonly(boolean state) {
-        for (int i = 0; i < MATRIX_WIDTH; i++) {
-            for (int j = 0; j < MATRIX_WIDTH; j++) {
-                if (mGameMatrix.get(i, j) == 0) {
-                    setTileReadonly(mTiles[i][j], state);
-                }
-            }
+        mReadonly = state;
+        if (state) {
+            select(NO_SELECTION);
         }
     }
 
     public void clearAnswers() {
-        mAnswerMatrix.setAll(mGameMatrix.getArray());
+        recordBulk(mGivens, mGivens);
+        mAnswers.setAll(mGivens);
 
         reloadTiles();
+        notifyChanged();
     }
 
     public void clearBoard() {
-        mGameMatrix.clear();
-        mAnswerMatrix.clear();
+        recordBulk(null, null);
+        mGivens.clear();
+        mAnswers.clear();
 
         reloadTiles();
+        notifyChanged();
     }
 
     public void unlockAllTiles() {
-        mGameMatrix.clear();
-        mAnswerMatrix.setAll(mAnswerMatrix.getArray());
+        recordBulk(null, mAnswers);
+        mGivens.clear();
 
-        for (int i = 0; i < MATRIX_WIDTH; i++) {
-            for (int j = 0; j < MATRIX_WIDTH; j++) {
-                setTileLock(mTiles[i][j], false);
-            }
-        }
+        invalidate();
+        notifyChanged();
     }
 
     public void lockAllTiles() {
-        for (int i = 0; i < MATRIX_WIDTH; i++) {
-            for (int j = 0; j < MATRIX_WIDTH; j++) {
-                if (mAnswerMatrix.get(i, j) != 0) {
-                    setTileLock(mTiles[i][j], true);
-                }
-            }
-        }
+        recordBulk(mAnswers, mAnswers);
+        mGivens.setAll(mAnswers);
 
-        mGameMatrix.setAll(mAnswerMatrix.getArray());
+        if (mSelected != NO_SELECTION && mGivens.get(mSelected) != 0) {
+            mSelected = NO_SELECTION;
+        }
+        invalidate();
+        notifyChanged();
     }
 
     @Nullable
     @Override
     protected Parcelable onSaveInstanceState() {
-        super.onSaveInstanceState();
-
         Bundle bundle = new Bundle();
-        bundle.putSerializable(BUNDLE_KEY_GAME, mGameMatrix.getArray());
-        bundle.putSerializable(BUNDLE_KEY_ANS, mAnswerMatrix.getArray());
+        bundle.putParcelable(BUNDLE_KEY_SUPER, super.onSaveInstanceState());
+        bundle.putByteArray(BUNDLE_KEY_BOARD, encode());
+        bundle.putBoolean(BUNDLE_KEY_NOTES, mShowNotes);
 
         return bundle;
     }
 
     @Override
     protected void onRestoreInstanceState(Parcelable state) {
-        super.onRestoreInstanceState(null);
-
         Bundle bundle = (Bundle) state;
 
-        byte[][] gameArray;
-        byte[][] ansArray;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            gameArray = bundle.getSerializable(BUNDLE_KEY_GAME, byte[][].class);
-            ansArray = bundle.getSerializable(BUNDLE_KEY_ANS, byte[][].class);
+            super.onRestoreInstanceState(bundle.getParcelable(BUNDLE_KEY_SUPER, Parcelable.class));
         } else {
-            gameArray = (byte[][]) bundle.getSerializable(BUNDLE_KEY_GAME);
-            ansArray = (byte[][]) bundle.getSerializable(BUNDLE_KEY_ANS);
+            super.onRestoreInstanceState(bundle.getParcelable(BUNDLE_KEY_SUPER));
         }
 
-
-        mGameMatrix.setAll(gameArray);
-        mAnswerMatrix.setAll(ansArray);
-
-        mIgnoreCheck = false;
-
-        reloadTiles();
+        mShowNotes = bundle.getBoolean(BUNDLE_KEY_NOTES);
+        decode(bundle.getByteArray(BUNDLE_KEY_BOARD));
     }
 
-    @SuppressLint("SetTextI18n")
     private void reloadTiles() {
-        mIgnoreCheck = true;
-
-        byte[][] ansArray = mAnswerMatrix.getArray();
-        byte[][] gameArray = mGameMatrix.getArray();
-        for (int i = 0; i < MATRIX_WIDTH; i++) {
-            for (int j = 0; j < MATRIX_WIDTH; j++) {
-                if (ansArray[i][j] == 0) {
-                    mTiles[i][j].setText(null);
-                    setTileLock(mTiles[i][j], false);
-                } else {
-                    mTiles[i][j].setText(Byte.toString(ansArray[i][j]));
-                    setTileLock(mTiles[i][j], gameArray[i][j] != 0);
-                }
-            }
+        Trace.beginSection("SudokuView.reloadTiles");
+        long start = Metrics.start();
+        try {
+            mSelected = NO_SELECTION;
+            mTracker.load(mAnswers);
+            mCandidates.reload();
+            // Every journaled move now precedes all eliminations
+            Arrays.fill(mMoveMarks, 0);
+        } finally {
+            Metrics.stop(RELOAD_LATENCY, start);
+            Trace.endSection();
         }
 
-        mIgnoreCheck = false;
+        invalidate();
     }
 
-    @SuppressWarnings("SameParameterValue")
-    private int dp(int pixels) {
-        float density = getContext().getResources().getDisplayMetrics().density;
-        return (int) (pixels * density + 0.5f);
+    private void select(int cell) {
+        if (cell != NO_SELECTION
+                && (mReadonly || mGivens.get(cell) != 0)) {
+            cell = NO_SELECTION;
+        }
+        if (cell == mSelected) {
+            return;
+        }
+
+        if (mSelected != NO_SELECTION) {
+            invalidateCell(mSelected);
+        }
+        mSelected = cell;
+        if (mSelected != NO_SELECTION) {
+            invalidateCell(mSelected);
+        }
     }
 
-    private class SudokuTextWatcher implements TextWatcher {
-        private final EditText mEditText;
-        private final ColorStateList mOldColors;
+    private void enterDigit(int digit) {
+        if (mSelected == NO_SELECTION || mReadonly || digit < 0 || digit > mWidth) {
+            return;
+        }
 
-        private final int mRow;
-        private final int mCol;
+        setValue(mSelected, (byte) digit);
+    }
 
-        public SudokuTextWatcher(EditText editText, int row, int column) {
-            super();
+    private void setValue(int cell, byte value) {
+        byte old = mAnswers.get(cell);
+        if (old == value) {
+            return;
+        }
 
-            mEditText = editText;
-            mOldColors = mEditText.getTextColors();
+        recordMove(cell, old, value, false);
+        applyValue(cell, value);
+    }
 
-            mRow = row;
-            mCol = column;
+    private void applyMove(int cell, int value, boolean given) {
+        if (!given) {
+            applyValue(cell, (byte) value);
+            return;
         }
 
-        @Override
-        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        mGivens.set(cell, (byte) value);
+        if (value != 0 && cell == mSelected) {
+            mSelected = NO_SELECTION;
         }
+        invalidateCell(cell);
+        notifyChanged();
+    }
 
-        @Override
-        public void onTextChanged(CharSequence s, int start, int before, int count) {
-            if (s.toString().isEmpty()) {
-                mEditText.setTextColor(mOldColors);
-                mAnswerMatrix.set(mRow, mCol, (byte) 0);
+    private void applyValue(int cell, byte value) {
+        mAnswers.set(cell, value);
 
-                return;
-            }
+        // Duplicates appearing or disappearing change the highlight of other cells too
+        boolean othersChanged = mTracker.set(cell, value);
+
+        mCandidates.update(cell);
+
+        if (othersChanged || (mShowNotes && mNotesFit)) {
+            invalidate();
+        } else {
+            invalidateCell(cell);
+        }
+        notifyChanged();
+    }
 
-            byte value = Byte.parseByte(s.toString());
-            if (mAnswerMatrix.canSet(mRow, mCol, value) || mIgnoreCheck) {
-                mEditText.setTextColor(mOldColors);
-                mAnswerMatrix.set(mRow, mCol, value);
-            } else {
-                mEditText.setTextColor(Color.RED);
+    /**
+     * Journals the cells differing from the given target as one group.
+     *
+     * @param givens  target locked cells, null if none
+     * @param answers target values, null for an empty board
+     */
+    private void recordBulk(@Nullable Board givens, @Nullable Board answers) {
+        mJournal.beginGroup();
+        for (int cell = 0; cell < mWidth * mWidth; cell++) {
+            byte given = mGivens.get(cell);
+            byte targetGiven = (givens != null) ? givens.get(cell) : 0;
+            if (given != targetGiven) {
+                recordMove(cell, given, targetGiven, true);
+            }
+            byte answer = mAnswers.get(cell);
+            byte targetAnswer = (answers != null) ? answers.get(cell) : 0;
+            if (answer != targetAnswer) {
+                recordMove(cell, answer, targetAnswer, false);
             }
         }
+        mJournal.endGroup();
+    }
 
-        @Override
-        public void afterTextChanged(Editable s) {
+    private void recordMove(int cell, int oldValue, int newValue, boolean given) {
+        int index = mJournal.getCursor();
+        if (index >= mMoveMarks.length) {
+            mMoveMarks = Arrays.copyOf(mMoveMarks, Math.max(index + 1, mMoveMarks.length * 2));
         }
+        mMoveMarks[index] = mCandidates.mark();
+
+        mJournal.record(cell, oldValue, newValue, given);
     }
 
-    private static class SudokuInputFilter implements InputFilter {
-        @Override
-        public CharSequence filter(CharSequence source, int start, int end, Spanned dest, int dstart, int dend) {
-            try {
-                String input = dest.subSequence(0, dstart)
-                        + source.subSequence(start, end).toString()
-                        + dest.subSequence(dend, dest.length());
+    /**
+     * Reverts the eliminations made after the move at the given journal index, which was just
+     * undone. They are only made by solution playback for the board it left, so they may not
+     * hold anymore. Redoing the move does not bring them back.
+     */
+    private void revertEliminations(int index) {
+        // Moves loaded into the journal were made before any elimination
+        int mark = (index < mMoveMarks.length) ? mMoveMarks[index] : 0;
+        if (mark >= mCandidates.mark()) {
+            return;
+        }
 
-                byte value = Byte.parseByte(input);
-                if (value <= MATRIX_WIDTH && value >= 1) {
-                    return null;
-                }
-            } catch (NumberFormatException ignored) {
-            }
+        mCandidates.undoTo(mark);
+        if (mShowNotes && mNotesFit) {
+            invalidate();
+        }
+    }
 
-            return "";
+    private void notifyChanged() {
+        if (mChangeListener != null) {
+            mChangeListener.onBoardChanged(this);
         }
     }
+
+    @SuppressWarnings("deprecation")
+    private void invalidateCell(int cell) {
+        int x = getPaddingLeft() + (int) ((cell % mWidth) * mCellSize);
+        int y = getPaddingTop() + (int) ((cell / mWidth) * mCellSize);
+        int size = (int) Math.ceil(mCellSize) + 1;
+
+        // Only a hint with hardware acceleration, which redraws the whole view
+        invalidate(x, y, x + size, y + size);
+    }
+
+    private float dp(float pixels) {
+        return pixels * getResources().getDisplayMetrics().density;
+    }
 }
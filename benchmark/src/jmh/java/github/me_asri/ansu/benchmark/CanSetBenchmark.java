@@ -0,0 +1,60 @@
+package github.me_asri.ansu.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import github.me_asri.ansu.core.ConflictTracker;
+
+/**
+ * Validation of a single keystroke: the library's {@code canSet} check against the incremental
+ * {@link ConflictTracker} update done by {@code SudokuView.applyValue}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CanSetBenchmark {
+    private GameMatrix mMatrix;
+    private ConflictTracker mTracker;
+    private int[] mEmptyCells;
+    private int mIndex = 0;
+
+    @Setup
+    public void setup() {
+        mMatrix = Puzzles.matrix(Puzzles.EASY);
+
+        byte[] cells = Puzzles.cells(Puzzles.EASY);
+        mTracker = new ConflictTracker(3);
+        mTracker.load(cells);
+        mEmptyCells = IntStream.range(0, cells.length).filter(c -> cells[c] == 0).toArray();
+    }
+
+    @Benchmark
+    public boolean canSet() {
+        int cell = mIndex;
+        mIndex = (mIndex + 1) % 81;
+
+        return mMatrix.canSet(cell / 9, cell % 9, (byte) (cell % 9 + 1));
+    }
+
+    /**
+     * Enters a digit into an empty cell and clears it again, leaving the board unchanged.
+     */
+    @Benchmark
+    public boolean conflictTrackerSetClear() {
+        int cell = mEmptyCells[mIndex];
+        mIndex = (mIndex + 1) % mEmptyCells.length;
+
+        boolean changed = mTracker.set(cell, (byte) (cell % 9 + 1));
+        changed |= mTracker.set(cell, (byte) 0);
+        return changed;
+    }
+}
@@ -0,0 +1,62 @@
+package github.me_asri.ansu.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import github.me_asri.ansu.core.Canonicalizer;
+import github.me_asri.ansu.core.Generator;
+
+/**
+ * Fingerprinting generated riddles and the bundled hard set, reported per puzzle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CanonicalizerBenchmark {
+    static private final int RIDDLE_COUNT = 64;
+
+    private final Canonicalizer mCanonicalizer = new Canonicalizer();
+    private final byte[] mScratch = new byte[81];
+
+    private List<byte[]> mRiddles;
+    private List<byte[]> mHardSet;
+
+    @Setup
+    public void setup() {
+        // Same riddles on every run
+        Generator generator = new Generator(3, new Random(9));
+
+        mRiddles = new ArrayList<>();
+        for (int i = 0; i < RIDDLE_COUNT; i++) {
+            mRiddles.add(generator.createRiddle(generator.createFull()));
+        }
+        mHardSet = Puzzles.hardSet();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RIDDLE_COUNT)
+    public void riddles(Blackhole blackhole) {
+        for (byte[] riddle : mRiddles) {
+            blackhole.consume(mCanonicalizer.fingerprint(riddle, mScratch));
+        }
+    }
+
+    @Benchmark
+    public void hardSet(Blackhole blackhole) {
+        for (byte[] puzzle : mHardSet) {
+            blackhole.consume(mCanonicalizer.fingerprint(puzzle, mScratch));
+        }
+    }
+}
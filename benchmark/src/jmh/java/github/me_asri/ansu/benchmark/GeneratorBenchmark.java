@@ -0,0 +1,57 @@
+package github.me_asri.ansu.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import de.sfuhrm.sudoku.Creator;
+import de.sfuhrm.sudoku.GameMatrix;
+import de.sfuhrm.sudoku.GameSchemas;
+import de.sfuhrm.sudoku.Riddle;
+import github.me_asri.ansu.core.Generator;
+import github.me_asri.ansu.core.Puzzle;
+import github.me_asri.ansu.core.Symmetry;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GeneratorBenchmark {
+    private Generator mGenerator;
+    private Generator mSymmetricGenerator;
+
+    @Setup
+    public void setup() {
+        mGenerator = Generator.forWidth(9);
+
+        mSymmetricGenerator = Generator.forWidth(9);
+        mSymmetricGenerator.setSymmetry(Symmetry.ROTATIONAL);
+        mSymmetricGenerator.setMinimal(true);
+    }
+
+    @Benchmark
+    public GameMatrix createFull() {
+        return Creator.createFull(GameSchemas.SCHEMA_9X9);
+    }
+
+    @Benchmark
+    public Riddle createFullAndRiddle() {
+        GameMatrix matrix = Creator.createFull(GameSchemas.SCHEMA_9X9);
+        return Creator.createRiddle(matrix);
+    }
+
+    @Benchmark
+    public Puzzle createPuzzle() {
+        return mGenerator.createPuzzle();
+    }
+
+    @Benchmark
+    public Puzzle createSymmetricMinimalPuzzle() {
+        return mSymmetricGenerator.createPuzzle();
+    }
+}
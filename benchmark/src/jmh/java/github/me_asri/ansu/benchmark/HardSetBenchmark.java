@@ -0,0 +1,87 @@
+package github.me_asri.ansu.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import de.sfuhrm.sudoku.GameSchemas;
+import de.sfuhrm.sudoku.Solver;
+import github.me_asri.ansu.core.BitSolver;
+import github.me_asri.ansu.core.Grids;
+import github.me_asri.ansu.core.PortfolioSolver;
+
+/**
+ * Compares solvers over the whole bundled hard-puzzle set, reported per puzzle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HardSetBenchmark {
+    // Must match the number of puzzles in hard.txt
+    static private final int PUZZLE_COUNT = 8;
+
+    private List<byte[]> mPuzzles;
+    private List<GameMatrix> mMatrices;
+    private BitSolver mBitSolver;
+    private ExecutorService mRaces;
+    private PortfolioSolver mPortfolioSolver;
+
+    @Setup
+    public void setup() {
+        mPuzzles = Puzzles.hardSet();
+        if (mPuzzles.size() != PUZZLE_COUNT) {
+            throw new IllegalStateException("Unexpected hard set size " + mPuzzles.size());
+        }
+
+        mMatrices = new ArrayList<>();
+        for (byte[] puzzle : mPuzzles) {
+            mMatrices.add(Grids.toMatrix(GameSchemas.SCHEMA_9X9, puzzle));
+        }
+        mBitSolver = new BitSolver(3);
+        mRaces = Executors.newCachedThreadPool();
+        mPortfolioSolver = new PortfolioSolver(9, mRaces);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mRaces.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PUZZLE_COUNT)
+    public void sfuhrmSolver(Blackhole blackhole) {
+        for (GameMatrix matrix : mMatrices) {
+            blackhole.consume(new Solver(matrix).solve());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PUZZLE_COUNT)
+    public void bitSolver(Blackhole blackhole) {
+        for (byte[] puzzle : mPuzzles) {
+            blackhole.consume(mBitSolver.solve(puzzle));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PUZZLE_COUNT)
+    public void portfolioSolver(Blackhole blackhole) {
+        for (byte[] puzzle : mPuzzles) {
+            blackhole.consume(mPortfolioSolver.solve(puzzle, null, 1));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package github.me_asri.ansu.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import github.me_asri.ansu.core.BitSolver;
+import github.me_asri.ansu.core.Generator;
+import github.me_asri.ansu.core.Grids;
+
+/**
+ * Solving and generating 16x16 and 25x25 riddles, solving reported per puzzle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LargeGridBenchmark {
+    static private final int PUZZLE_COUNT = 8;
+
+    @Param({"16", "25"})
+    public int width;
+
+    private List<byte[]> mPuzzles;
+    private BitSolver mBitSolver;
+    private Generator mGenerator;
+
+    @Setup
+    public void setup() {
+        // Same riddles on every run
+        mGenerator = new Generator(Grids.blockWidth(width), new Random(width));
+
+        mPuzzles = new ArrayList<>();
+        for (int i = 0; i < PUZZLE_COUNT; i++) {
+            mPuzzles.add(mGenerator.createRiddle(mGenerator.createFull()));
+        }
+        mBitSolver = BitSolver.forWidth(width);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PUZZLE_COUNT)
+    public void bitSolver(Blackhole blackhole) {
+        for (byte[] puzzle : mPuzzles) {
+            blackhole.consume(mBitSolver.solve(puzzle));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PUZZLE_COUNT)
+    public void bitSolverUnique(Blackhole blackhole) {
+        for (byte[] puzzle : mPuzzles) {
+            blackhole.consume(mBitSolver.solve(puzzle, null, 2));
+        }
+    }
+
+    @Benchmark
+    public byte[] createRiddle() {
+        return mGenerator.createRiddle(mGenerator.createFull());
+    }
+}
@@ -0,0 +1,69 @@
+package github.me_asri.ansu.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import de.sfuhrm.sudoku.GameSchemas;
+import github.me_asri.ansu.core.Grids;
+import github.me_asri.ansu.core.PuzzleReader;
+
+/**
+ * Boards shared by the benchmarks.
+ */
+final class Puzzles {
+    static final String EASY =
+            ".....7.........2.88....93649.7...4.641.8.......59.473....2.8............54......2";
+    static final String HARD =
+            "8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4..";
+    static final String NEAR_EMPTY =
+            "1...............2...............3...............4...............................5";
+
+    private Puzzles() {
+    }
+
+    static String byName(String name) {
+        switch (name) {
+            case "easy":
+                return EASY;
+            case "hard":
+                return HARD;
+            case "near_empty":
+                return NEAR_EMPTY;
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    static byte[] cells(String puzzle) {
+        byte[] cells = new byte[puzzle.length()];
+        for (int i = 0; i < cells.length; i++) {
+            char c = puzzle.charAt(i);
+            cells[i] = (byte) ((c == '.') ? 0 : c - '0');
+        }
+
+        return cells;
+    }
+
+    static GameMatrix matrix(String puzzle) {
+        return Grids.toMatrix(GameSchemas.SCHEMA_9X9, cells(puzzle));
+    }
+
+    /**
+     * @return well-known hard puzzles with a unique solution, bundled as {@code hard.txt}
+     */
+    static List<byte[]> hardSet() {
+        List<byte[]> puzzles = new ArrayList<>();
+        try (InputStream input = Puzzles.class.getResourceAsStream("/hard.txt");
+             PuzzleReader reader = new PuzzleReader(input, 9)) {
+            reader.forEachRemaining(puzzles::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return puzzles;
+    }
+}
@@ -0,0 +1,47 @@
+package github.me_asri.ansu.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import github.me_asri.ansu.core.Board;
+import github.me_asri.ansu.core.SdkFormat;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SdkFormatBenchmark {
+    private Board mBoard;
+    private byte[] mFile;
+    private final ByteArrayOutputStream mOutput = new ByteArrayOutputStream(128);
+
+    @Setup
+    public void setup() throws IOException {
+        mBoard = Board.wrap(Puzzles.cells(Puzzles.EASY));
+
+        SdkFormat.write(mBoard, mOutput);
+        mFile = mOutput.toByteArray();
+    }
+
+    @Benchmark
+    public Board importFile() throws IOException {
+        return SdkFormat.read(9, new ByteArrayInputStream(mFile));
+    }
+
+    @Benchmark
+    public int exportFile() throws IOException {
+        mOutput.reset();
+        SdkFormat.write(mBoard, mOutput);
+
+        return mOutput.size();
+    }
+}
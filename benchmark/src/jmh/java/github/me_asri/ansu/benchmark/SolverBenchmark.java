@@ -0,0 +1,53 @@
+package github.me_asri.ansu.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import de.sfuhrm.sudoku.Solver;
+import github.me_asri.ansu.core.BitSolver;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SolverBenchmark {
+    @Param({"easy", "hard", "near_empty"})
+    public String board;
+
+    private GameMatrix mMatrix;
+    private byte[] mCells;
+    private BitSolver mBitSolver;
+
+    @Setup
+    public void setup() {
+        String puzzle = Puzzles.byName(board);
+
+        mMatrix = Puzzles.matrix(puzzle);
+        mCells = Puzzles.cells(puzzle);
+        mBitSolver = new BitSolver(3);
+    }
+
+    @Benchmark
+    public List<GameMatrix> sfuhrmSolver() {
+        return new Solver(mMatrix).solve();
+    }
+
+    @Benchmark
+    public byte[] bitSolver() {
+        return mBitSolver.solve(mCells);
+    }
+
+    @Benchmark
+    public GameMatrix bitSolverMatrix() {
+        return BitSolver.solve(mMatrix);
+    }
+}
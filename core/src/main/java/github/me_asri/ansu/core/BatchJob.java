@@ -0,0 +1,180 @@
+package github.me_asri.ansu.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Streams through a puzzle collection and writes one result line per puzzle.
+ * <p>
+ * Every {@link #CHECKPOINT_INTERVAL} puzzles the output is written out and a checkpoint is
+ * reported, holding the number of puzzles done and the length of the output. Running again from
+ * a checkpoint skips that many puzzles and cuts the output back to that length, so results
+ * written after the checkpoint are redone rather than duplicated.
+ * <p>
+ * Lines hold the puzzle, or its solution when solving, followed by the result:
+ * <ul>
+ *     <li>{@link Mode#SOLVE}: the first solution found, followed by {@code multiple} if there are
+ *     more, or the puzzle followed by {@code unsolvable}</li>
+ *     <li>{@link Mode#VALIDATE}: {@code unique}, {@code multiple} or {@code unsolvable}</li>
+ *     <li>{@link Mode#GRADE}: score and difficulty, or {@code UNSOLVABLE}</li>
+ * </ul>
+ */
+public class BatchJob {
+    static public final int CHECKPOINT_INTERVAL = 256;
+
+    public enum Mode {
+        SOLVE,
+        VALIDATE,
+        GRADE
+    }
+
+    public interface Listener {
+        /**
+         * Called once all output up to the checkpoint is written.
+         *
+         * @param puzzles     number of puzzles done
+         * @param outputBytes length of the output
+         */
+        void onCheckpoint(long puzzles, long outputBytes);
+    }
+
+    private final Mode mMode;
+    private final CancellationToken mToken;
+
+    private int mWidth = 0;
+    private BitSolver mSolver;
+    private Grader mGrader;
+    private byte[] mPuzzle;
+    private byte[] mSolution;
+
+    // Lines since the last checkpoint, grown to fit the largest batch of them
+    private final StringBuilder mBuilder = new StringBuilder();
+    private ByteBuffer mBuffer = ByteBuffer.allocate(0);
+
+    /**
+     * @param token stops the job once cancelled, also within the puzzle being processed
+     */
+    public BatchJob(Mode mode, CancellationToken token) {
+        mMode = mode;
+        mToken = token;
+    }
+
+    /**
+     * Processes the puzzles of the input from the given checkpoint on, or from the start if both
+     * are 0.
+     *
+     * @param output  writable channel the results are written to
+     * @param puzzles number of puzzles done at the checkpoint
+     * @param outputBytes length of the output at the checkpoint
+     * @return number of puzzles done, including those before the checkpoint
+     * @throws PuzzleFormatException if the input is malformed
+     */
+    public long run(InputStream input, FileChannel output, long puzzles, long outputBytes,
+                    Listener listener) throws IOException {
+        output.truncate(outputBytes);
+        output.position(outputBytes);
+
+        try (PuzzleReader reader = new PuzzleReader(input)) {
+            byte[] cells = new byte[PuzzleReader.MAX_WIDTH * PuzzleReader.MAX_WIDTH];
+            // Parsing is far cheaper than any of the modes, so skipping is not worth an index
+            for (long i = 0; i < puzzles; i++) {
+                if (!reader.read(cells)) {
+                    return i;
+                }
+            }
+
+            long done = puzzles;
+            try {
+                while (!mToken.isCancelled() && reader.read(cells)) {
+                    process(cells, reader.getWidth());
+                    done++;
+
+                    if (done % CHECKPOINT_INTERVAL == 0) {
+                        listener.onCheckpoint(done, flush(output));
+                    }
+                }
+            } catch (CancellationException e) {
+                // Lines are only built once a puzzle is done, so the cancelled one is simply redone
+            }
+            listener.onCheckpoint(done, flush(output));
+
+            return done;
+        }
+    }
+
+    private void process(byte[] cells, int width) {
+        if (width != mWidth) {
+            mWidth = width;
+            mSolver = BitSolver.forWidth(width);
+            mSolver.setCancellationToken(mToken);
+            mGrader = Grader.forWidth(width);
+            mGrader.setCancellationToken(mToken);
+            mPuzzle = new byte[width * width];
+            mSolution = new byte[width * width];
+        }
+
+        byte[] puzzle = mPuzzle;
+        System.arraycopy(cells, 0, puzzle, 0, puzzle.length);
+        switch (mMode) {
+            case SOLVE: {
+                int solutions = mSolver.solve(puzzle, mSolution, 2);
+                if (solutions == 0) {
+                    appendCells(puzzle);
+                    mBuilder.append(" unsolvable");
+                } else {
+                    appendCells(mSolution);
+                    if (solutions > 1) {
+                        mBuilder.append(" multiple");
+                    }
+                }
+                break;
+            }
+            case VALIDATE: {
+                Uniqueness uniqueness = mSolver.checkUniqueness(puzzle, null);
+                appendCells(puzzle);
+                mBuilder.append(' ').append((uniqueness == Uniqueness.NONE)
+                        ? "unsolvable" : uniqueness.name().toLowerCase(Locale.ROOT));
+                break;
+            }
+            case GRADE: {
+                Grade grade = mGrader.grade(puzzle);
+                appendCells(puzzle);
+                mBuilder.append(' ').append(grade.getScore()).append(' ')
+                        .append(grade.isSolvable() ? grade.getDifficulty().name() : "UNSOLVABLE");
+                break;
+            }
+        }
+        mBuilder.append('\n');
+    }
+
+    private void appendCells(byte[] cells) {
+        Grids.appendCells(mBuilder, cells, mWidth);
+    }
+
+    /**
+     * Writes the lines built so far.
+     *
+     * @return length of the output
+     */
+    private long flush(FileChannel output) throws IOException {
+        if (mBuffer.capacity() < mBuilder.length()) {
+            mBuffer = ByteBuffer.allocate(mBuilder.length());
+        }
+
+        mBuffer.clear();
+        for (int i = 0; i < mBuilder.length(); i++) {
+            mBuffer.put((byte) mBuilder.charAt(i));
+        }
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            output.write(mBuffer);
+        }
+        mBuilder.setLength(0);
+
+        return output.position();
+    }
+}
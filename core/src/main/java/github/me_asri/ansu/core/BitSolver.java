@@ -0,0 +1,662 @@
+package github.me_asri.ansu.core;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import de.sfuhrm.sudoku.GameMatrix;
+
+/**
+ * Constraint propagation solver keeping the candidates of every cell as int bitmasks.
+ * <p>
+ * Cells are stored row-major in a flat array, 0 meaning empty. Digit {@code v} is represented
+ * by bit {@code v - 1}. Placing a digit only updates the candidates of the cell's peers and
+ * queues peers left with a single candidate, so naked singles never rescan the grid. Hidden
+ * singles, and locked candidates once those are exhausted, are applied until a fixpoint and then
+ * the search branches on the most constrained cell. Search state is kept on an explicit stack,
+ * so {@link #next()} can be called again to resume towards the next solution.
+ * <p>
+ * Instances are not thread safe but may be reused for any number of puzzles of the same size.
+ */
+public class BitSolver {
+    // Number of branches between two polls of the cancellation token, minus one
+    static private final int CANCEL_CHECK_MASK = 0xFF;
+
+    private final int mBlockWidth;
+    private final int mWidth;
+    private final int mSize;
+    private final int mAll;
+
+    private final int[] mRowOf;
+    private final int[] mColOf;
+    private final int[] mBoxOf;
+    private final int[][] mUnits;
+    private final int[][] mPeers;
+
+    private final byte[] mCells;
+    // Candidates of empty cells, 0 for filled cells
+    private final int[] mCand;
+    // Used digits: rows at [0, width), columns at [width, 2 * width), blocks at [2 * width, 3 * width)
+    private final int[] mUsed;
+    private int mEmpty;
+
+    // Empty cells left with at most one candidate, waiting to be placed
+    private final int[] mSingles;
+    private int mSingleCount;
+
+    private final byte[][] mSavedCells;
+    private final int[][] mSavedCand;
+    private final int[][] mSavedUsed;
+    private final int[] mSavedEmpty;
+    private final int[] mBranchCell;
+    private final int[] mBranchCand;
+    private int mDepth;
+
+    // Digits per row or column segment of a unit, used by locked candidates
+    private final int[] mSegments;
+
+    private boolean mConsistent;
+    private boolean mStarted;
+    private long mNodes;
+    private long mNodeLimit = Long.MAX_VALUE;
+    private boolean mNodeLimitReached;
+
+    private CancellationToken mToken = null;
+    private Random mRandom = null;
+
+    public BitSolver(int blockWidth) {
+        if (blockWidth < 2 || blockWidth > 5) {
+            throw new InvalidParameterException("Unsupported block width");
+        }
+
+        mBlockWidth = blockWidth;
+        mWidth = blockWidth * blockWidth;
+        mSize = mWidth * mWidth;
+        mAll = (1 << mWidth) - 1;
+
+        mRowOf = new int[mSize];
+        mColOf = new int[mSize];
+        mBoxOf = new int[mSize];
+        mUnits = new int[3 * mWidth][mWidth];
+        for (int c = 0; c < mSize; c++) {
+            int row = c / mWidth;
+            int col = c % mWidth;
+            int box = (row / blockWidth) * blockWidth + col / blockWidth;
+            int boxPos = (row % blockWidth) * blockWidth + col % blockWidth;
+
+            mRowOf[c] = row;
+            mColOf[c] = mWidth + col;
+            mBoxOf[c] = 2 * mWidth + box;
+
+            mUnits[row][col] = c;
+            mUnits[mWidth + col][row] = c;
+            mUnits[2 * mWidth + box][boxPos] = c;
+        }
+
+        // Row and column peers, then the block peers outside both
+        mPeers = new int[mSize][2 * (mWidth - 1) + (blockWidth - 1) * (blockWidth - 1)];
+        for (int c = 0; c < mSize; c++) {
+            int k = 0;
+            for (int p : mUnits[mRowOf[c]]) {
+                if (p != c) {
+                    mPeers[c][k++] = p;
+                }
+            }
+            for (int p : mUnits[mColOf[c]]) {
+                if (p != c) {
+                    mPeers[c][k++] = p;
+                }
+            }
+            for (int p : mUnits[mBoxOf[c]]) {
+                if (mRowOf[p] != mRowOf[c] && mColOf[p] != mColOf[c]) {
+                    mPeers[c][k++] = p;
+                }
+            }
+        }
+
+        mCells = new byte[mSize];
+        mCand = new int[mSize];
+        mUsed = new int[3 * mWidth];
+        mSingles = new int[mSize];
+
+        mSavedCells = new byte[mSize][];
+        mSavedCand = new int[mSize][];
+        mSavedUsed = new int[mSize][];
+        mSavedEmpty = new int[mSize];
+        mBranchCell = new int[mSize];
+        mBranchCand = new int[mSize];
+
+        mSegments = new int[blockWidth];
+    }
+
+    static public BitSolver forWidth(int width) {
+        return new BitSolver(Grids.blockWidth(width));
+    }
+
+    /**
+     * Solves the given 9x9, 16x16 or 25x25 matrix.
+     *
+     * @return the first solution found or null if the matrix has none
+     */
+    static public GameMatrix solve(GameMatrix matrix) {
+        return solve(forWidth(matrix.getSchema().getWidth()), matrix);
+    }
+
+    static public GameMatrix solve(BitSolver solver, GameMatrix matrix) {
+        byte[] solution = solver.solve(Grids.toArray(matrix));
+        if (solution == null) {
+            return null;
+        }
+        return Grids.toMatrix(matrix.getSchema(), solution);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * Sets the token polled during the search. Once it is cancelled {@link #next()} throws
+     * {@link java.util.concurrent.CancellationException}.
+     */
+    public void setCancellationToken(CancellationToken token) {
+        mToken = token;
+    }
+
+    /**
+     * Makes the search try the candidates of a cell in random order instead of ascending order,
+     * so solving an empty or sparse grid yields a random solution.
+     *
+     * @param random source of the order or null for ascending order
+     */
+    public void setRandom(Random random) {
+        mRandom = random;
+    }
+
+    /**
+     * Makes {@link #next()} give up once the given number of branches were taken since the last
+     * {@link #load(byte[])}. The limit is checked as often as the cancellation token, so it may
+     * be overshot by a few hundred branches.
+     */
+    public void setNodeLimit(long limit) {
+        if (limit <= 0) {
+            throw new InvalidParameterException("Invalid node limit");
+        }
+        mNodeLimit = limit;
+    }
+
+    /**
+     * @return true if the search since the last {@link #load(byte[])} was stopped by the node
+     * limit, in which case solutions may have been missed
+     */
+    public boolean isNodeLimitReached() {
+        return mNodeLimitReached;
+    }
+
+    /**
+     * @return number of branches taken since the last {@link #load(byte[])}
+     */
+    public long getNodeCount() {
+        return mNodes;
+    }
+
+    /**
+     * Solves the given puzzle.
+     *
+     * @return a new array holding the first solution found or null if there is none
+     */
+    public byte[] solve(byte[] cells) {
+        load(cells);
+        if (!next()) {
+            return null;
+        }
+
+        return mCells.clone();
+    }
+
+    /**
+     * Searches for up to {@code limit} solutions of the given puzzle.
+     *
+     * @param solution receives the first solution found, may be null
+     * @return number of solutions found, at most {@code limit}
+     */
+    public int solve(byte[] cells, byte[] solution, int limit) {
+        load(cells);
+
+        int count = 0;
+        while (count < limit && next()) {
+            if (count == 0 && solution != null) {
+                getSolution(solution);
+            }
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Tells whether the given puzzle has no, one or several solutions, stopping the search at
+     * the second solution.
+     *
+     * @param solution receives the first solution found, may be null
+     */
+    public Uniqueness checkUniqueness(byte[] cells, byte[] solution) {
+        return Uniqueness.of(solve(cells, solution, 2));
+    }
+
+    /**
+     * Enumerates up to {@code limit} solutions of the given puzzle lazily, each search resuming
+     * where the previous solution was found, so nothing is computed before it is asked for.
+     * <p>
+     * The iterator drives this solver, which must not be used for anything else until the
+     * iteration is done.
+     *
+     * @return iterator returning every solution as a new array
+     */
+    public Iterator<byte[]> solutions(byte[] cells, int limit) {
+        if (limit < 0) {
+            throw new InvalidParameterException("Negative solution limit");
+        }
+        load(cells);
+
+        return new Iterator<byte[]>() {
+            private int mReturned = 0;
+            // Whether a solution is found but not returned yet, null until searched
+            private Boolean mPending = null;
+
+            @Override
+            public boolean hasNext() {
+                if (mPending == null) {
+                    mPending = mReturned < limit && BitSolver.this.next();
+                }
+                return mPending;
+            }
+
+            @Override
+            public byte[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                mPending = null;
+                mReturned++;
+                return mCells.clone();
+            }
+        };
+    }
+
+    /**
+     * Applies singles and locked candidates to the given puzzle without branching.
+     *
+     * @return true if that alone completes the puzzle, which also proves its solution unique
+     */
+    public boolean solvesByPropagation(byte[] cells) {
+        load(cells);
+        mStarted = true;
+
+        return mConsistent && propagate() && mEmpty == 0;
+    }
+
+    /**
+     * Resets the solver to the given puzzle.
+     *
+     * @return false if the givens already contain a duplicate digit
+     */
+    public boolean load(byte[] cells) {
+        if (cells.length != mSize) {
+            throw new InvalidParameterException("Invalid puzzle size");
+        }
+
+        Arrays.fill(mUsed, 0);
+        mEmpty = 0;
+        mDepth = 0;
+        mNodes = 0;
+        mNodeLimitReached = false;
+        mSingleCount = 0;
+        mStarted = false;
+        mConsistent = true;
+
+        for (int c = 0; c < mSize; c++) {
+            byte value = cells[c];
+            mCells[c] = value;
+            if (value == 0) {
+                mEmpty++;
+                continue;
+            }
+            if (value < 0 || value > mWidth) {
+                throw new InvalidParameterException("Invalid cell value");
+            }
+
+            int bit = 1 << (value - 1);
+            if (((mUsed[mRowOf[c]] | mUsed[mColOf[c]] | mUsed[mBoxOf[c]]) & bit) != 0) {
+                mConsistent = false;
+            }
+            mUsed[mRowOf[c]] |= bit;
+            mUsed[mColOf[c]] |= bit;
+            mUsed[mBoxOf[c]] |= bit;
+        }
+
+        for (int c = 0; c < mSize; c++) {
+            if (mCells[c] != 0) {
+                mCand[c] = 0;
+                continue;
+            }
+
+            int cand = mAll & ~(mUsed[mRowOf[c]] | mUsed[mColOf[c]] | mUsed[mBoxOf[c]]);
+            mCand[c] = cand;
+            if ((cand & (cand - 1)) == 0) {
+                mSingles[mSingleCount++] = c;
+            }
+        }
+
+        return mConsistent;
+    }
+
+    /**
+     * Advances the search to the next solution of the loaded puzzle.
+     *
+     * @return true if a solution was found, readable through {@link #getSolution(byte[])}
+     */
+    public boolean next() {
+        if (!mStarted) {
+            mStarted = true;
+            if (!mConsistent || !propagate()) {
+                return false;
+            }
+            if (mEmpty == 0) {
+                return true;
+            }
+            push();
+        }
+
+        while (mDepth > 0) {
+            int frame = mDepth - 1;
+            int remaining = mBranchCand[frame];
+            if (remaining == 0) {
+                mDepth--;
+                continue;
+            }
+
+            int bit = (mRandom == null) ? remaining & -remaining : randomBit(remaining);
+            mBranchCand[frame] = remaining ^ bit;
+
+            restore(frame);
+            if ((++mNodes & CANCEL_CHECK_MASK) == 0) {
+                if (mToken != null) {
+                    mToken.throwIfCancelled();
+                }
+                if (mNodes >= mNodeLimit) {
+                    mNodeLimitReached = true;
+                    mDepth = 0;
+                    return false;
+                }
+            }
+
+            if (!place(mBranchCell[frame], bit) || !propagate()) {
+                continue;
+            }
+            if (mEmpty == 0) {
+                return true;
+            }
+            push();
+        }
+
+        return false;
+    }
+
+    public void getSolution(byte[] out) {
+        System.arraycopy(mCells, 0, out, 0, mSize);
+    }
+
+    private int randomBit(int mask) {
+        for (int k = mRandom.nextInt(Integer.bitCount(mask)); k > 0; k--) {
+            mask &= mask - 1;
+        }
+        return mask & -mask;
+    }
+
+    /**
+     * Places a digit and removes it from the candidates of the cell's peers.
+     *
+     * @return false if a peer was left without candidates
+     */
+    private boolean place(int c, int bit) {
+        mCells[c] = (byte) (Integer.numberOfTrailingZeros(bit) + 1);
+        mCand[c] = 0;
+        mUsed[mRowOf[c]] |= bit;
+        mUsed[mColOf[c]] |= bit;
+        mUsed[mBoxOf[c]] |= bit;
+        mEmpty--;
+
+        for (int p : mPeers[c]) {
+            if (!remove(p, bit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes digits from the candidates of a cell, queueing it once a single one is left.
+     *
+     * @return false if the cell was left without candidates
+     */
+    private boolean remove(int c, int digits) {
+        int cand = mCand[c];
+        if ((cand & digits) == 0) {
+            return true;
+        }
+
+        cand &= ~digits;
+        mCand[c] = cand;
+        if (cand == 0) {
+            return false;
+        }
+        if ((cand & (cand - 1)) == 0) {
+            mSingles[mSingleCount++] = c;
+        }
+        return true;
+    }
+
+    private boolean propagate() {
+        while (mEmpty > 0) {
+            // Naked singles
+            while (mSingleCount > 0) {
+                int c = mSingles[--mSingleCount];
+                if (mCells[c] != 0) {
+                    continue;
+                }
+                if (mCand[c] == 0 || !place(c, mCand[c])) {
+                    return false;
+                }
+            }
+
+            // Hidden singles
+            boolean changed = false;
+            for (int u = 0; u < mUnits.length && mSingleCount == 0; u++) {
+                int[] unit = mUnits[u];
+                int once = 0;
+                int twice = 0;
+                for (int c : unit) {
+                    int cand = mCand[c];
+                    twice |= once & cand;
+                    once |= cand;
+                }
+                if ((once | mUsed[u]) != mAll) {
+                    return false;
+                }
+
+                int hidden = once & ~twice;
+                while (hidden != 0) {
+                    int bit = hidden & -hidden;
+                    hidden ^= bit;
+
+                    int target = -1;
+                    for (int c : unit) {
+                        if ((mCand[c] & bit) != 0) {
+                            target = c;
+                            break;
+                        }
+                    }
+                    if (target < 0 || !place(target, bit)) {
+                        return false;
+                    }
+                    changed = true;
+                }
+            }
+
+            if (changed || mSingleCount > 0 || mEmpty == 0) {
+                continue;
+            }
+
+            int result = lockedCandidates();
+            if (result < 0) {
+                return false;
+            }
+            if (result == 0) {
+                break;
+            }
+        }
+
+        mSingleCount = 0;
+        return true;
+    }
+
+    /**
+     * Removes digits confined to one line of a block from the rest of the line, and digits
+     * confined to one block within a line from the rest of the block.
+     *
+     * @return 1 if candidates were removed, 0 if none were and -1 if a cell was left without any
+     */
+    private int lockedCandidates() {
+        int result = 0;
+
+        // Pointing: block digits confined to one row or column of the block
+        for (int b = 2 * mWidth; b < 3 * mWidth; b++) {
+            int[] box = mUnits[b];
+            for (int byRow = 0; byRow < 2; byRow++) {
+                Arrays.fill(mSegments, 0);
+                for (int k = 0; k < mWidth; k++) {
+                    int segment = (byRow == 1) ? k / mBlockWidth : k % mBlockWidth;
+                    mSegments[segment] |= mCand[box[k]];
+                }
+
+                for (int segment = 0; segment < mBlockWidth; segment++) {
+                    int confined = confined(segment);
+                    if (confined == 0) {
+                        continue;
+                    }
+
+                    int first = (byRow == 1) ? box[segment * mBlockWidth] : box[segment];
+                    int line = (byRow == 1) ? mRowOf[first] : mColOf[first];
+                    int removed = eliminate(line, confined, b);
+                    if (removed < 0) {
+                        return removed;
+                    }
+                    result |= removed;
+                }
+            }
+        }
+
+        // Claiming: row and column digits confined to one block
+        for (int line = 0; line < 2 * mWidth; line++) {
+            int[] unit = mUnits[line];
+            Arrays.fill(mSegments, 0);
+            for (int k = 0; k < mWidth; k++) {
+                mSegments[k / mBlockWidth] |= mCand[unit[k]];
+            }
+
+            for (int segment = 0; segment < mBlockWidth; segment++) {
+                int confined = confined(segment);
+                if (confined == 0) {
+                    continue;
+                }
+
+                int removed = eliminate(mBoxOf[unit[segment * mBlockWidth]], confined, line);
+                if (removed < 0) {
+                    return removed;
+                }
+                result |= removed;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return digits of the given segment in {@link #mSegments} appearing in no other segment
+     */
+    private int confined(int segment) {
+        int others = 0;
+        for (int k = 0; k < mBlockWidth; k++) {
+            if (k != segment) {
+                others |= mSegments[k];
+            }
+        }
+        return mSegments[segment] & ~others;
+    }
+
+    /**
+     * Removes digits from the cells of a unit which are not part of another unit.
+     *
+     * @return 1 if candidates were removed, 0 if none were and -1 if a cell was left without any
+     */
+    private int eliminate(int unit, int digits, int except) {
+        int result = 0;
+        for (int c : mUnits[unit]) {
+            if ((mCand[c] & digits) == 0
+                    || mRowOf[c] == except || mColOf[c] == except || mBoxOf[c] == except) {
+                continue;
+            }
+
+            if (!remove(c, digits)) {
+                return -1;
+            }
+            result = 1;
+        }
+        return result;
+    }
+
+    private void push() {
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int c = 0; c < mSize; c++) {
+            if (mCells[c] != 0) {
+                continue;
+            }
+
+            int count = Integer.bitCount(mCand[c]);
+            if (count < bestCount) {
+                best = c;
+                bestCount = count;
+                if (count == 2) {
+                    break;
+                }
+            }
+        }
+
+        int frame = mDepth;
+        if (mSavedCells[frame] == null) {
+            mSavedCells[frame] = new byte[mSize];
+            mSavedCand[frame] = new int[mSize];
+            mSavedUsed[frame] = new int[mUsed.length];
+        }
+        System.arraycopy(mCells, 0, mSavedCells[frame], 0, mSize);
+        System.arraycopy(mCand, 0, mSavedCand[frame], 0, mSize);
+        System.arraycopy(mUsed, 0, mSavedUsed[frame], 0, mUsed.length);
+        mSavedEmpty[frame] = mEmpty;
+        mBranchCell[frame] = best;
+        mBranchCand[frame] = mCand[best];
+
+        mDepth++;
+    }
+
+    private void restore(int frame) {
+        System.arraycopy(mSavedCells[frame], 0, mCells, 0, mSize);
+        System.arraycopy(mSavedCand[frame], 0, mCand, 0, mSize);
+        System.arraycopy(mSavedUsed[frame], 0, mUsed, 0, mUsed.length);
+        mEmpty = mSavedEmpty[frame];
+        mSingleCount = 0;
+    }
+}
@@ -0,0 +1,160 @@
+package github.me_asri.ansu.core;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+import de.sfuhrm.sudoku.GameMatrix;
+
+/**
+ * Square grid of cells held in a single flat row-major array, 0 meaning empty.
+ * <p>
+ * {@link #snapshot()} and {@link #setAll(Board)} share the array instead of copying it. Whichever
+ * board is written to next copies it first, so a board keeps being edited while snapshots of it
+ * are read on other threads, and a board that is only looked at is never copied at all.
+ * <p>
+ * Instances are not thread safe, but a snapshot may be handed to another thread.
+ */
+public class Board {
+    private final int mWidth;
+    private byte[] mCells;
+    // Set while mCells may be referenced by another board
+    private boolean mShared;
+
+    /**
+     * Creates an empty board.
+     */
+    public Board(int width) {
+        Grids.blockWidth(width);
+
+        mWidth = width;
+        mCells = new byte[width * width];
+        mShared = false;
+    }
+
+    private Board(int width, byte[] cells, boolean shared) {
+        mWidth = width;
+        mCells = cells;
+        mShared = shared;
+    }
+
+    /**
+     * @return a board holding a copy of the given cells
+     */
+    static public Board of(byte[] cells) {
+        return wrap(cells.clone());
+    }
+
+    /**
+     * @return a board taking over the given cells, which must not be changed afterwards
+     */
+    static public Board wrap(byte[] cells) {
+        int width = Grids.width(cells);
+        Grids.blockWidth(width);
+
+        return new Board(width, cells, false);
+    }
+
+    static public Board fromMatrix(GameMatrix matrix) {
+        return wrap(Grids.toArray(matrix));
+    }
+
+    public GameMatrix toMatrix() {
+        return Grids.toMatrix(Grids.schema(mWidth), mCells);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return number of cells
+     */
+    public int size() {
+        return mCells.length;
+    }
+
+    public byte get(int cell) {
+        return mCells[cell];
+    }
+
+    public byte get(int row, int column) {
+        return mCells[row * mWidth + column];
+    }
+
+    public void set(int cell, byte value) {
+        if (mCells[cell] == value) {
+            return;
+        }
+
+        if (mShared) {
+            mCells = mCells.clone();
+            mShared = false;
+        }
+        mCells[cell] = value;
+    }
+
+    public void set(int row, int column, byte value) {
+        set(row * mWidth + column, value);
+    }
+
+    /**
+     * Takes over the cells of a board of the same width, without copying them.
+     */
+    public void setAll(Board other) {
+        if (other.mWidth != mWidth) {
+            throw new InvalidParameterException("Invalid board size");
+        }
+
+        other.mShared = true;
+        mCells = other.mCells;
+        mShared = true;
+    }
+
+    public void clear() {
+        if (mShared) {
+            mCells = new byte[mCells.length];
+            mShared = false;
+        } else {
+            Arrays.fill(mCells, (byte) 0);
+        }
+    }
+
+    /**
+     * @return a board with the current cells, unaffected by later changes to this one
+     */
+    public Board snapshot() {
+        mShared = true;
+        return new Board(mWidth, mCells, true);
+    }
+
+    /**
+     * @return the cells as a new array
+     */
+    public byte[] toArray() {
+        return mCells.clone();
+    }
+
+    /**
+     * Copies the cells to the start of the given array.
+     */
+    public void copyTo(byte[] cells) {
+        System.arraycopy(mCells, 0, cells, 0, mCells.length);
+    }
+
+    /**
+     * @return the cells without copying, only for reading within core
+     */
+    byte[] array() {
+        return mCells;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof Board) && Arrays.equals(mCells, ((Board) other).mCells);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(mCells);
+    }
+}
@@ -0,0 +1,166 @@
+package github.me_asri.ansu.core;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidParameterException;
+
+/**
+ * Compact binary encoding of a board and its locked cells.
+ * <p>
+ * The first byte holds the width. It is followed by the cell values packed little-endian with
+ * as many bits per cell as the largest digit needs, 4 for 9x9 and 5 for 16x16 and 25x25, and
+ * by a bitmap with a bit set for every locked cell. A 9x9 board takes 53 bytes.
+ */
+public class BoardCodec {
+    private BoardCodec() {
+    }
+
+    static public int bitsPerCell(int width) {
+        return 32 - Integer.numberOfLeadingZeros(width);
+    }
+
+    static public int encodedLength(int width) {
+        int size = width * width;
+        return 1 + (size * bitsPerCell(width) + 7) / 8 + (size + 7) / 8;
+    }
+
+    /**
+     * @param givens values of the locked cells and 0 elsewhere, null if nothing is locked
+     */
+    static public byte[] encode(Board cells, Board givens) {
+        return encode(cells.array(), (givens != null) ? givens.array() : null);
+    }
+
+    /**
+     * @param cells  current values, row-major, 0 meaning empty
+     * @param givens values of the locked cells and 0 elsewhere, null if nothing is locked
+     */
+    static public byte[] encode(byte[] cells, byte[] givens) {
+        int width = (int) Math.round(Math.sqrt(cells.length));
+        int size = width * width;
+        if (size != cells.length || width > 0xFF || (givens != null && givens.length != size)) {
+            throw new InvalidParameterException("Invalid board size");
+        }
+
+        int bits = bitsPerCell(width);
+        byte[] data = new byte[encodedLength(width)];
+        data[0] = (byte) width;
+
+        int offset = 1;
+        long buffer = 0;
+        int buffered = 0;
+        for (int c = 0; c < size; c++) {
+            int value = cells[c];
+            if (value < 0 || value > width) {
+                throw new InvalidParameterException("Invalid cell value");
+            }
+
+            buffer |= (long) value << buffered;
+            buffered += bits;
+            while (buffered >= 8) {
+                data[offset++] = (byte) buffer;
+                buffer >>>= 8;
+                buffered -= 8;
+            }
+        }
+        if (buffered > 0) {
+            data[offset++] = (byte) buffer;
+        }
+
+        if (givens != null) {
+            for (int c = 0; c < size; c++) {
+                if (givens[c] == 0) {
+                    continue;
+                }
+                if (givens[c] != cells[c]) {
+                    throw new InvalidParameterException("Locked cell differs from its given");
+                }
+                data[offset + (c >> 3)] |= (byte) (1 << (c & 7));
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * @return width of the encoded board
+     */
+    static public int width(byte[] data) {
+        if (data.length == 0) {
+            throw new InvalidParameterException("Empty board encoding");
+        }
+
+        int width = data[0] & 0xFF;
+        if (width < 1 || data.length != encodedLength(width)) {
+            throw new InvalidParameterException("Invalid board encoding");
+        }
+
+        return width;
+    }
+
+    /**
+     * Decodes a board into the given arrays, which need to fit {@link #width(byte[])}.
+     *
+     * @param givens receives the values of the locked cells and 0 elsewhere, may be null
+     */
+    static public void decode(byte[] data, byte[] cells, byte[] givens) {
+        width(data);
+        decode(ByteBuffer.wrap(data), 0, cells, givens);
+    }
+
+    /**
+     * Decodes a board stored at an absolute position of a buffer without copying it out first.
+     * The buffer position is left untouched.
+     *
+     * @param givens receives the values of the locked cells and 0 elsewhere, may be null
+     */
+    static public void decode(ByteBuffer data, int position, byte[] cells, byte[] givens) {
+        int width = data.get(position) & 0xFF;
+        int size = width * width;
+        if (width < 1 || position + encodedLength(width) > data.limit()) {
+            throw new InvalidParameterException("Invalid board encoding");
+        }
+        if (cells.length != size || (givens != null && givens.length != size)) {
+            throw new InvalidParameterException("Invalid board size");
+        }
+
+        int bits = bitsPerCell(width);
+        int mask = (1 << bits) - 1;
+
+        int offset = position + 1;
+        long buffer = 0;
+        int buffered = 0;
+        for (int c = 0; c < size; c++) {
+            while (buffered < bits) {
+                buffer |= (long) (data.get(offset++) & 0xFF) << buffered;
+                buffered += 8;
+            }
+
+            int value = (int) buffer & mask;
+            if (value > width) {
+                throw new InvalidParameterException("Invalid cell value");
+            }
+            cells[c] = (byte) value;
+            buffer >>>= bits;
+            buffered -= bits;
+        }
+
+        if (givens != null) {
+            int locks = position + encodedLength(width) - (size + 7) / 8;
+            for (int c = 0; c < size; c++) {
+                boolean locked = (data.get(locks + (c >> 3)) & (1 << (c & 7))) != 0;
+                givens[c] = locked ? cells[c] : 0;
+            }
+        }
+    }
+
+    /**
+     * @return the cells of an encoded board as a new array, ignoring locks
+     */
+    static public byte[] decode(byte[] data) {
+        int width = width(data);
+        byte[] cells = new byte[width * width];
+        decode(data, cells, null);
+
+        return cells;
+    }
+}
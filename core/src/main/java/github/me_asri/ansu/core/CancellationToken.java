@@ -0,0 +1,45 @@
+package github.me_asri.ansu.core;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooperative cancellation flag with an optional deadline, polled by long running searches.
+ */
+public class CancellationToken {
+    private final boolean mHasDeadline;
+    private final long mDeadline;
+
+    private volatile boolean mCancelled = false;
+
+    public CancellationToken() {
+        mHasDeadline = false;
+        mDeadline = 0;
+    }
+
+    public CancellationToken(long timeout, TimeUnit unit) {
+        mHasDeadline = true;
+        mDeadline = System.nanoTime() + unit.toNanos(timeout);
+    }
+
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled || isTimedOut();
+    }
+
+    public boolean isTimedOut() {
+        return mHasDeadline && System.nanoTime() - mDeadline >= 0;
+    }
+
+    public void throwIfCancelled() {
+        if (mCancelled) {
+            throw new CancellationException("Cancelled");
+        }
+        if (isTimedOut()) {
+            throw new CancellationException("Timed out");
+        }
+    }
+}
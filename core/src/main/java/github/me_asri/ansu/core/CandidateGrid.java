@@ -0,0 +1,152 @@
+package github.me_asri.ansu.core;
+
+import java.util.Arrays;
+
+/**
+ * Pencil marks of every cell, kept in sync with a {@link ConflictTracker}.
+ * <p>
+ * Candidates are bitmasks with digit {@code v} at bit {@code v - 1}; filled cells have none.
+ * A digit is a candidate when neither the row, column nor block of the cell contains it and it
+ * was not eliminated explicitly. After a cell changes only the cell and its peers are
+ * recomputed. Eliminations and restorations are journaled per cell, so they can be reverted
+ * with {@link #undoTo(int)} without touching other cells.
+ */
+public class CandidateGrid {
+    private final ConflictTracker mTracker;
+    private final int mSize;
+
+    private final int[][] mPeers;
+
+    private final int[] mCandidates;
+    private final int[] mEliminated;
+
+    // Entries pack cell and previous eliminations
+    private long[] mJournal = new long[64];
+    private int mJournalSize = 0;
+
+    public CandidateGrid(ConflictTracker tracker) {
+        mTracker = tracker;
+
+        int width = tracker.getWidth();
+        int blockWidth = Grids.blockWidth(width);
+        mSize = width * width;
+
+        mPeers = new int[mSize][];
+        int peerCount = 3 * (width - 1) - 2 * (blockWidth - 1);
+        for (int c = 0; c < mSize; c++) {
+            int row = c / width;
+            int col = c % width;
+            int boxRow = row - row % blockWidth;
+            int boxCol = col - col % blockWidth;
+
+            int[] peers = new int[peerCount];
+            int count = 0;
+            for (int p = 0; p < mSize; p++) {
+                int pRow = p / width;
+                int pCol = p % width;
+                boolean sameBox = pRow - pRow % blockWidth == boxRow && pCol - pCol % blockWidth == boxCol;
+                if (p != c && (pRow == row || pCol == col || sameBox)) {
+                    peers[count++] = p;
+                }
+            }
+            mPeers[c] = peers;
+        }
+
+        mCandidates = new int[mSize];
+        mEliminated = new int[mSize];
+    }
+
+    /**
+     * Recomputes all cells and drops explicit eliminations and the journal.
+     */
+    public void reload() {
+        Arrays.fill(mEliminated, 0);
+        mJournalSize = 0;
+
+        for (int c = 0; c < mSize; c++) {
+            mCandidates[c] = compute(c);
+        }
+    }
+
+    /**
+     * Refreshes the given cell and its peers after the tracker changed the cell.
+     */
+    public void update(int cell) {
+        refresh(cell);
+        for (int peer : mPeers[cell]) {
+            refresh(peer);
+        }
+    }
+
+    public int get(int cell) {
+        return mCandidates[cell];
+    }
+
+    public int[] getPeers(int cell) {
+        return mPeers[cell];
+    }
+
+    /**
+     * Removes the given digits from the candidates of a cell until they are restored.
+     */
+    public void eliminate(int cell, int mask) {
+        if ((mEliminated[cell] | mask) == mEliminated[cell]) {
+            return;
+        }
+
+        record(cell);
+        mEliminated[cell] |= mask;
+        mCandidates[cell] &= ~mask;
+    }
+
+    public void restore(int cell, int mask) {
+        if ((mEliminated[cell] & mask) == 0) {
+            return;
+        }
+
+        record(cell);
+        mEliminated[cell] &= ~mask;
+        mCandidates[cell] = compute(cell);
+    }
+
+    /**
+     * @return journal position to pass to {@link #undoTo(int)}
+     */
+    public int mark() {
+        return mJournalSize;
+    }
+
+    /**
+     * Reverts the eliminations and restorations made since the given {@link #mark()},
+     * recomputing only the cells they touched.
+     */
+    public void undoTo(int mark) {
+        while (mJournalSize > mark) {
+            long entry = mJournal[--mJournalSize];
+
+            int cell = (int) (entry >>> 32);
+            mEliminated[cell] = (int) entry;
+            mCandidates[cell] = compute(cell);
+        }
+    }
+
+    private void refresh(int cell) {
+        mCandidates[cell] = compute(cell);
+    }
+
+    private int compute(int cell) {
+        if (mTracker.get(cell) != 0) {
+            return 0;
+        }
+
+        return mTracker.allowed(cell) & ~mEliminated[cell];
+    }
+
+    private void record(int cell) {
+        if (mJournalSize == mJournal.length) {
+            mJournal = Arrays.copyOf(mJournal, mJournal.length * 2);
+        }
+
+        mJournal[mJournalSize++] = ((long) cell << 32) | mEliminated[cell];
+    }
+}
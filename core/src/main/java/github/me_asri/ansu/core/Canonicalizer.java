@@ -0,0 +1,390 @@
+package github.me_asri.ansu.core;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+/**
+ * Maps 9x9 puzzles to a canonical form shared by all their equivalent variants.
+ * <p>
+ * Two puzzles are equivalent if one turns into the other by relabelling digits, permuting rows
+ * within a band or columns within a stack, swapping bands or stacks and transposing. The
+ * canonical form is the lexicographically smallest variant, empty cells counting as 0 and digits
+ * relabelled in order of first appearance.
+ * <p>
+ * Rows are chosen one at a time for every column arrangement and a branch is cut as soon as its
+ * rows compare greater than the best variant found so far, so most of the 3.3 million transforms
+ * are never completed. Rows, columns, bands and stacks with identical content are only tried in
+ * one order, which keeps sparse puzzles with many empty rows from exploding.
+ * <p>
+ * Instances are not thread safe but may be reused for any number of puzzles.
+ */
+public class Canonicalizer {
+    static private final int WIDTH = 9;
+    static private final int SIZE = WIDTH * WIDTH;
+
+    // Every column order keeping stacks together: source column per target column
+    static private final int[][] COLUMN_PERMS = new int[1296][WIDTH];
+    static private final int[][] PERMS_3 = {
+            {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+    };
+
+    static {
+        int k = 0;
+        for (int[] stacks : PERMS_3) {
+            for (int[] first : PERMS_3) {
+                for (int[] second : PERMS_3) {
+                    for (int[] third : PERMS_3) {
+                        int[][] within = {first, second, third};
+                        for (int j = 0; j < WIDTH; j++) {
+                            COLUMN_PERMS[k][j] = stacks[j / 3] * 3 + within[j / 3][j % 3];
+                        }
+                        k++;
+                    }
+                }
+            }
+        }
+    }
+
+    private final byte[] mGrid = new byte[SIZE];
+    private final byte[] mBest = new byte[SIZE];
+    // Rows of mBest that are set, later rows compare greater than anything
+    private int mBestRows;
+
+    // Whether a row, column, band or stack equals its predecessor with a lower index in mGrid
+    private final boolean[][] mSameRow = new boolean[WIDTH][WIDTH];
+    private final boolean[][] mSameColumn = new boolean[WIDTH][WIDTH];
+    private final boolean[][] mSameBand = new boolean[3][3];
+    private final boolean[][] mSameStack = new boolean[3][3];
+
+    private int[] mColumns;
+    private final int[] mRowUsed = new int[WIDTH];
+    private final int[] mBandUsed = new int[3];
+    // Label of every digit per depth, 0 if unlabelled, and the next free label
+    private final byte[][] mLabels = new byte[WIDTH + 1][WIDTH + 1];
+    private final int[] mNextLabel = new int[WIDTH + 1];
+
+    public Canonicalizer() {
+        // Depth 0 starts with nothing labelled and is never written
+        mNextLabel[0] = 1;
+    }
+
+    /**
+     * @return the canonical form as a new array
+     */
+    public byte[] canonicalize(byte[] cells) {
+        byte[] out = new byte[SIZE];
+        canonicalize(cells, out);
+
+        return out;
+    }
+
+    /**
+     * Writes the canonical form of a puzzle into {@code out}, which may be the input itself.
+     */
+    public void canonicalize(byte[] cells, byte[] out) {
+        if (cells.length != SIZE || out.length != SIZE) {
+            throw new InvalidParameterException("Only 9x9 puzzles are supported");
+        }
+        for (byte value : cells) {
+            if (value < 0 || value > WIDTH) {
+                throw new InvalidParameterException("Invalid cell value");
+            }
+        }
+
+        // The first row is smallest when it has its clues as far right as possible, so only the
+        // rows with the best clue layout are worth starting from
+        int minLayout = Integer.MAX_VALUE;
+        for (int transpose = 0; transpose < 2; transpose++) {
+            for (int row = 0; row < WIDTH; row++) {
+                minLayout = Math.min(minLayout, layout(cells, transpose, row));
+            }
+        }
+
+        mBestRows = 0;
+        for (int transpose = 0; transpose < 2; transpose++) {
+            boolean found = false;
+            for (int row = 0; row < WIDTH && !found; row++) {
+                found = layout(cells, transpose, row) == minLayout;
+            }
+            if (!found) {
+                continue;
+            }
+
+            for (int i = 0; i < WIDTH; i++) {
+                for (int j = 0; j < WIDTH; j++) {
+                    mGrid[i * WIDTH + j] = (transpose == 0) ? cells[i * WIDTH + j] : cells[j * WIDTH + i];
+                }
+            }
+            findDuplicates();
+
+            for (int row = 0; row < WIDTH; row++) {
+                if (layout(cells, transpose, row) == minLayout && isNextOfKind(row, 0)) {
+                    searchFrom(row);
+                }
+            }
+        }
+
+        System.arraycopy(mBest, 0, out, 0, SIZE);
+    }
+
+    /**
+     * @return 64-bit hash of a canonical form, equal for all equivalent puzzles
+     */
+    static public long fingerprint(byte[] canonical) {
+        // FNV-1a followed by a final mix, so the low bits are usable as hash table index
+        long hash = 0xCBF29CE484222325L;
+        for (byte value : canonical) {
+            hash = (hash ^ value) * 0x100000001B3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Canonicalizes a puzzle in the given scratch array and returns its fingerprint.
+     */
+    public long fingerprint(byte[] cells, byte[] scratch) {
+        canonicalize(cells, scratch);
+        return fingerprint(scratch);
+    }
+
+    /**
+     * @return the clue layout a row gets at its best, as a bitmap of its clues read from the
+     * left, clue-free stacks and cells coming first
+     */
+    static private int layout(byte[] cells, int transpose, int row) {
+        int[] counts = new int[3];
+        for (int j = 0; j < WIDTH; j++) {
+            int value = (transpose == 0) ? cells[row * WIDTH + j] : cells[j * WIDTH + row];
+            if (value != 0) {
+                counts[j / 3]++;
+            }
+        }
+        Arrays.sort(counts);
+
+        int layout = 0;
+        for (int count : counts) {
+            layout = (layout << 3) | ((1 << count) - 1);
+        }
+        return layout;
+    }
+
+    /**
+     * Searches every column arrangement that gives the row its best layout as first row.
+     */
+    private void searchFrom(int row) {
+        int[] counts = new int[3];
+        for (int j = 0; j < WIDTH; j++) {
+            if (mGrid[row * WIDTH + j] != 0) {
+                counts[j / 3]++;
+            }
+        }
+
+        for (int s = 0; s < PERMS_3.length; s++) {
+            int[] stacks = PERMS_3[s];
+            if (counts[stacks[0]] > counts[stacks[1]] || counts[stacks[1]] > counts[stacks[2]]) {
+                continue;
+            }
+
+            for (int first = 0; first < PERMS_3.length; first++) {
+                if (!isCluesLast(row, stacks[0], PERMS_3[first])) {
+                    continue;
+                }
+                for (int second = 0; second < PERMS_3.length; second++) {
+                    if (!isCluesLast(row, stacks[1], PERMS_3[second])) {
+                        continue;
+                    }
+                    for (int third = 0; third < PERMS_3.length; third++) {
+                        if (!isCluesLast(row, stacks[2], PERMS_3[third])) {
+                            continue;
+                        }
+
+                        int[] columns = COLUMN_PERMS[((s * 6 + first) * 6 + second) * 6 + third];
+                        if (!isRepresentative(columns)) {
+                            continue;
+                        }
+
+                        mColumns = columns;
+                        if (compareRow(row, 0) <= 0) {
+                            mRowUsed[row] = 1;
+                            mBandUsed[row / 3] = 1;
+                            search(1);
+                            mRowUsed[row] = 0;
+                            mBandUsed[row / 3] = 0;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the order puts the empty cells of a row within a stack before its clues
+     */
+    private boolean isCluesLast(int row, int stack, int[] order) {
+        int offset = row * WIDTH + stack * 3;
+        for (int k = 1; k < 3; k++) {
+            if (mGrid[offset + order[k - 1]] != 0 && mGrid[offset + order[k]] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void findDuplicates() {
+        for (int a = 0; a < WIDTH; a++) {
+            for (int b = 0; b < WIDTH; b++) {
+                boolean sameRow = true;
+                boolean sameColumn = true;
+                for (int k = 0; k < WIDTH; k++) {
+                    sameRow &= mGrid[a * WIDTH + k] == mGrid[b * WIDTH + k];
+                    sameColumn &= mGrid[k * WIDTH + a] == mGrid[k * WIDTH + b];
+                }
+                mSameRow[a][b] = sameRow;
+                mSameColumn[a][b] = sameColumn;
+            }
+        }
+
+        for (int a = 0; a < 3; a++) {
+            for (int b = 0; b < 3; b++) {
+                boolean sameBand = true;
+                boolean sameStack = true;
+                for (int k = 0; k < 3; k++) {
+                    sameBand &= mSameRow[a * 3 + k][b * 3 + k];
+                    sameStack &= mSameColumn[a * 3 + k][b * 3 + k];
+                }
+                mSameBand[a][b] = sameBand;
+                mSameStack[a][b] = sameStack;
+            }
+        }
+    }
+
+    /**
+     * @return false if swapping identical columns or stacks turns the arrangement into one that
+     * is tried anyway
+     */
+    private boolean isRepresentative(int[] columns) {
+        for (int j = 0; j < WIDTH; j++) {
+            for (int k = j + 1; k < WIDTH; k++) {
+                int a = columns[j];
+                int b = columns[k];
+                if (a > b && a / 3 == b / 3 && mSameColumn[a][b]) {
+                    return false;
+                }
+                if (j % 3 == 0 && k % 3 == 0 && a > b && mSameStack[a / 3][b / 3]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void search(int depth) {
+        if (depth == WIDTH) {
+            return;
+        }
+
+        // A new band starts every third row, otherwise the rows come from the current band
+        int firstRow = 0;
+        int lastRow = WIDTH;
+        if (depth % 3 != 0) {
+            for (int b = 0; b < 3; b++) {
+                if (mBandUsed[b] == depth / 3 + 1) {
+                    firstRow = b * 3;
+                    lastRow = firstRow + 3;
+                }
+            }
+        }
+
+        for (int row = firstRow; row < lastRow; row++) {
+            if (mRowUsed[row] != 0 || !isNextOfKind(row, depth)) {
+                continue;
+            }
+
+            int cmp = compareRow(row, depth);
+            if (cmp > 0) {
+                continue;
+            }
+
+            mRowUsed[row] = depth + 1;
+            boolean newBand = depth % 3 == 0;
+            if (newBand) {
+                mBandUsed[row / 3] = depth / 3 + 1;
+            }
+
+            search(depth + 1);
+
+            mRowUsed[row] = 0;
+            if (newBand) {
+                mBandUsed[row / 3] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return false if an identical unused row or band with a lower index has to be taken first
+     */
+    private boolean isNextOfKind(int row, int depth) {
+        if (depth % 3 == 0) {
+            int band = row / 3;
+            if (mBandUsed[band] != 0) {
+                return false;
+            }
+            for (int b = 0; b < band; b++) {
+                if (mBandUsed[b] == 0 && mSameBand[b][band]) {
+                    return false;
+                }
+            }
+        }
+
+        for (int r = row / 3 * 3; r < row; r++) {
+            if (mRowUsed[r] == 0 && mSameRow[r][row]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Relabels a row placed at the given depth and compares it to the same row of the best
+     * variant, replacing that and dropping the later best rows if it is smaller.
+     *
+     * @return negative, zero or positive as the row is smaller, equal or greater
+     */
+    private int compareRow(int row, int depth) {
+        byte[] labels = mLabels[depth + 1];
+        System.arraycopy(mLabels[depth], 0, labels, 0, WIDTH + 1);
+        int next = mNextLabel[depth];
+
+        int offset = depth * WIDTH;
+        int cmp = (depth < mBestRows) ? 0 : -1;
+        for (int j = 0; j < WIDTH; j++) {
+            int value = mGrid[row * WIDTH + mColumns[j]];
+            if (value != 0) {
+                if (labels[value] == 0) {
+                    labels[value] = (byte) next++;
+                }
+                value = labels[value];
+            }
+
+            if (cmp == 0) {
+                cmp = value - mBest[offset + j];
+                if (cmp > 0) {
+                    return cmp;
+                }
+            }
+            if (cmp < 0) {
+                mBest[offset + j] = (byte) value;
+            }
+        }
+
+        if (cmp < 0) {
+            mBestRows = depth + 1;
+        }
+        mNextLabel[depth + 1] = next;
+        return cmp;
+    }
+}
@@ -0,0 +1,154 @@
+package github.me_asri.ansu.core;
+
+import java.util.Arrays;
+
+/**
+ * Incrementally maintained per-row, per-column and per-block digit counts.
+ * <p>
+ * Updating a cell and checking whether a cell is in conflict are both O(1) and allocation free.
+ * A cell is in conflict when its digit appears more than once in one of its units.
+ */
+public class ConflictTracker {
+    private final int mWidth;
+    private final int mSize;
+
+    private final int[] mRowOf;
+    private final int[] mColOf;
+    private final int[] mBoxOf;
+
+    private final byte[] mCells;
+    // Digit counts per unit, indexed by unit * (width + 1) + digit
+    private final byte[] mCounts;
+    // Digits present per unit as bitmasks, digit v at bit v - 1
+    private final int[] mPresent;
+    // Number of (unit, digit) pairs appearing more than once
+    private int mDuplicates = 0;
+
+    public ConflictTracker(int blockWidth) {
+        mWidth = blockWidth * blockWidth;
+        mSize = mWidth * mWidth;
+
+        mRowOf = new int[mSize];
+        mColOf = new int[mSize];
+        mBoxOf = new int[mSize];
+        for (int c = 0; c < mSize; c++) {
+            int row = c / mWidth;
+            int col = c % mWidth;
+
+            mRowOf[c] = row;
+            mColOf[c] = mWidth + col;
+            mBoxOf[c] = 2 * mWidth + (row / blockWidth) * blockWidth + col / blockWidth;
+        }
+
+        mCells = new byte[mSize];
+        mCounts = new byte[3 * mWidth * (mWidth + 1)];
+        mPresent = new int[3 * mWidth];
+    }
+
+    /**
+     * Replaces all cells at once.
+     */
+    public void load(Board board) {
+        load(board.array());
+    }
+
+    /**
+     * Replaces all cells at once.
+     */
+    public void load(byte[] cells) {
+        Arrays.fill(mCells, (byte) 0);
+        Arrays.fill(mCounts, (byte) 0);
+        Arrays.fill(mPresent, 0);
+        mDuplicates = 0;
+
+        for (int c = 0; c < mSize; c++) {
+            set(c, cells[c]);
+        }
+    }
+
+    /**
+     * Sets the digit of a cell, 0 clearing it.
+     *
+     * @return true if the conflict state of cells other than {@code cell} may have changed
+     */
+    public boolean set(int cell, byte value) {
+        byte old = mCells[cell];
+        if (old == value) {
+            return false;
+        }
+
+        boolean changed = false;
+        if (old != 0) {
+            changed |= remove(mRowOf[cell], old);
+            changed |= remove(mColOf[cell], old);
+            changed |= remove(mBoxOf[cell], old);
+        }
+
+        mCells[cell] = value;
+        if (value != 0) {
+            changed |= add(mRowOf[cell], value);
+            changed |= add(mColOf[cell], value);
+            changed |= add(mBoxOf[cell], value);
+        }
+
+        return changed;
+    }
+
+    public byte get(int cell) {
+        return mCells[cell];
+    }
+
+    public boolean isConflict(int cell) {
+        int value = mCells[cell];
+        if (value == 0) {
+            return false;
+        }
+
+        return count(mRowOf[cell], value) > 1
+                || count(mColOf[cell], value) > 1
+                || count(mBoxOf[cell], value) > 1;
+    }
+
+    public boolean hasConflicts() {
+        return mDuplicates != 0;
+    }
+
+    /**
+     * @return mask of digits still allowed in the given cell by its row, column and block
+     */
+    public int allowed(int cell) {
+        return ((1 << mWidth) - 1) & ~(mPresent[mRowOf[cell]] | mPresent[mColOf[cell]] | mPresent[mBoxOf[cell]]);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    private int count(int unit, int value) {
+        return mCounts[unit * (mWidth + 1) + value];
+    }
+
+    private boolean add(int unit, int value) {
+        int count = ++mCounts[unit * (mWidth + 1) + value];
+        if (count == 1) {
+            mPresent[unit] |= 1 << (value - 1);
+        } else if (count == 2) {
+            mDuplicates++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean remove(int unit, int value) {
+        int count = --mCounts[unit * (mWidth + 1) + value];
+        if (count == 0) {
+            mPresent[unit] &= ~(1 << (value - 1));
+        } else if (count == 1) {
+            mDuplicates--;
+            return true;
+        }
+
+        return false;
+    }
+}
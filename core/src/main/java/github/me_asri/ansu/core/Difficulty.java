@@ -0,0 +1,37 @@
+package github.me_asri.ansu.core;
+
+/**
+ * Difficulty bands derived from the hardest technique a puzzle needs.
+ */
+public enum Difficulty {
+    EASY,
+    MEDIUM,
+    HARD,
+    EXPERT,
+    EVIL;
+
+    static public Difficulty of(Technique technique) {
+        if (technique == null) {
+            return EASY;
+        }
+
+        switch (technique) {
+            case HIDDEN_SINGLE:
+            case NAKED_SINGLE:
+                return EASY;
+            case POINTING:
+            case BOX_LINE:
+                return MEDIUM;
+            case NAKED_PAIR:
+            case HIDDEN_PAIR:
+            case NAKED_TRIPLE:
+            case HIDDEN_TRIPLE:
+                return HARD;
+            case X_WING:
+            case SWORDFISH:
+                return EXPERT;
+            default:
+                return EVIL;
+        }
+    }
+}
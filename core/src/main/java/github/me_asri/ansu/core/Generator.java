@@ -0,0 +1,290 @@
+package github.me_asri.ansu.core;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates random riddles with a unique solution for 9x9, 16x16 and 25x25 grids.
+ * <p>
+ * A full grid is made by filling the independent diagonal blocks with random permutations and
+ * letting {@link BitSolver} complete the rest in random candidate order. Givens are then removed
+ * in random order, keeping a removal only while the riddle still has exactly one solution.
+ * Searches that take too long are abandoned: a full grid is started over and a removal is
+ * treated as making the solution ambiguous. On 16x16 and larger grids proving uniqueness by search
+ * is too slow, so a removal is only kept while propagation alone still completes the riddle.
+ * <p>
+ * Digging can stop at a target number of givens and remove givens only together with their
+ * {@link Symmetry} images. A riddle can also be required to be minimal, no single given being
+ * removable without losing uniqueness, which is proven by search on every width; a check that
+ * times out counts the given as needed. Minimal riddles are dug as far as possible, the target
+ * then being the most givens allowed. Riddles missing any of these goals are discarded, and
+ * {@link #createPuzzle()} gives up after a number of discarded riddles.
+ * <p>
+ * Instances are not thread safe, see {@link ParallelGenerator} for generating on all cores.
+ */
+public class Generator {
+    static private final long FULL_GRID_TIMEOUT_MS = 1000;
+    static private final long UNIQUENESS_TIMEOUT_MS = 100;
+    // Smallest width whose riddles are dug with propagation instead of search
+    static private final int PROPAGATION_MIN_WIDTH = 16;
+    static public final int DEFAULT_MAX_ATTEMPTS = 1000;
+
+    private final int mBlockWidth;
+    private final int mWidth;
+    private final int mSize;
+
+    private final Random mRandom;
+    private final BitSolver mSolver;
+
+    private int mTargetClues = 0;
+    private Symmetry mSymmetry = Symmetry.NONE;
+    private int[][] mOrbits;
+    private boolean mMinimal = false;
+    private int mMaxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private CancellationToken mToken = null;
+
+    public Generator(int blockWidth, Random random) {
+        mSolver = new BitSolver(blockWidth);
+        mRandom = random;
+
+        mBlockWidth = blockWidth;
+        mWidth = blockWidth * blockWidth;
+        mSize = mWidth * mWidth;
+        mOrbits = mSymmetry.orbits(mWidth);
+    }
+
+    static public Generator forWidth(int width) {
+        return new Generator(Grids.blockWidth(width), new Random());
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * Makes digging stop at the given number of givens. Riddles whose grid runs out of removable
+     * givens earlier are discarded. For minimal riddles this is the most givens allowed instead.
+     *
+     * @param clues number of givens or 0 to remove as many as possible
+     */
+    public void setTargetClues(int clues) {
+        if (clues < 0 || clues > mSize) {
+            throw new InvalidParameterException("Invalid number of givens");
+        }
+        mTargetClues = clues;
+    }
+
+    public int getTargetClues() {
+        return mTargetClues;
+    }
+
+    public void setSymmetry(Symmetry symmetry) {
+        mSymmetry = symmetry;
+        mOrbits = symmetry.orbits(mWidth);
+    }
+
+    public Symmetry getSymmetry() {
+        return mSymmetry;
+    }
+
+    /**
+     * Makes riddles which still have a given removable without losing uniqueness be discarded.
+     */
+    public void setMinimal(boolean minimal) {
+        mMinimal = minimal;
+    }
+
+    public boolean isMinimal() {
+        return mMinimal;
+    }
+
+    /**
+     * Limits the number of full grids {@link #createPuzzle()} digs before giving up.
+     */
+    public void setMaxAttempts(int attempts) {
+        if (attempts <= 0) {
+            throw new InvalidParameterException("Invalid number of attempts");
+        }
+        mMaxAttempts = attempts;
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * Sets the token polled between full grids and between the givens being removed. Once it is
+     * cancelled {@link CancellationException} is thrown.
+     */
+    public void setCancellationToken(CancellationToken token) {
+        mToken = token;
+    }
+
+    /**
+     * Creates riddles from new full grids until one meets the goals set.
+     *
+     * @return a new random riddle without grade
+     * @throws IllegalStateException if no riddle met the goals within the attempts allowed, as
+     *                               happens with goals few or no grids can meet
+     */
+    public Puzzle createPuzzle() {
+        for (int attempt = 0; attempt < mMaxAttempts; attempt++) {
+            throwIfCancelled();
+            byte[] riddle = createRiddle(createFull());
+            if (riddle != null) {
+                return new Puzzle(riddle);
+            }
+        }
+
+        throw new IllegalStateException("No riddle met the goals in " + mMaxAttempts + " attempts");
+    }
+
+    /**
+     * @return a random completely filled grid
+     */
+    public byte[] createFull() {
+        byte[] cells = new byte[mSize];
+        byte[] digits = new byte[mWidth];
+
+        mSolver.setRandom(mRandom);
+        try {
+            while (true) {
+                throwIfCancelled();
+                Arrays.fill(cells, (byte) 0);
+                for (int box = 0; box < mBlockWidth; box++) {
+                    shuffleDigits(digits);
+                    int origin = box * mBlockWidth * mWidth + box * mBlockWidth;
+                    for (int k = 0; k < mWidth; k++) {
+                        cells[origin + (k / mBlockWidth) * mWidth + k % mBlockWidth] = digits[k];
+                    }
+                }
+
+                mSolver.setCancellationToken(new CancellationToken(FULL_GRID_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+                try {
+                    byte[] full = mSolver.solve(cells);
+                    if (full != null) {
+                        return full;
+                    }
+                } catch (CancellationException ignored) {
+                    // Unlucky start, try another one
+                }
+            }
+        } finally {
+            mSolver.setRandom(null);
+            mSolver.setCancellationToken(null);
+        }
+    }
+
+    /**
+     * Removes as many givens of a full grid as possible, or as many as needed to reach the
+     * target, while keeping the solution unique.
+     *
+     * @return a new array holding the riddle or null if it misses the goals set
+     */
+    public byte[] createRiddle(byte[] full) {
+        if (full.length != mSize) {
+            throw new InvalidParameterException("Invalid puzzle size");
+        }
+
+        byte[] cells = full.clone();
+        int[][] order = mOrbits.clone();
+        for (int k = order.length - 1; k > 0; k--) {
+            int swap = mRandom.nextInt(k + 1);
+            int[] tmp = order[k];
+            order[k] = order[swap];
+            order[swap] = tmp;
+        }
+
+        // Stopping at the target would leave minimal riddles with removable givens
+        int floor = mMinimal ? 0 : mTargetClues;
+        int clues = mSize;
+        for (int[] orbit : order) {
+            throwIfCancelled();
+            if (clues == floor) {
+                break;
+            }
+            if (clues - orbit.length < floor) {
+                continue;
+            }
+
+            for (int c : orbit) {
+                cells[c] = 0;
+            }
+            if (isUnique(cells)) {
+                clues -= orbit.length;
+            } else {
+                for (int c : orbit) {
+                    cells[c] = full[c];
+                }
+            }
+        }
+
+        if (mTargetClues != 0 && (mMinimal ? clues > mTargetClues : clues != mTargetClues)) {
+            return null;
+        }
+        if (mMinimal && !isMinimal(cells)) {
+            return null;
+        }
+        return cells;
+    }
+
+    /**
+     * @return true if removing any single given of the riddle makes its solution ambiguous
+     */
+    private boolean isMinimal(byte[] cells) {
+        for (int c = 0; c < mSize; c++) {
+            byte value = cells[c];
+            if (value == 0) {
+                continue;
+            }
+
+            throwIfCancelled();
+            cells[c] = 0;
+            boolean unique = isUniqueBySearch(cells);
+            cells[c] = value;
+            if (unique) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void throwIfCancelled() {
+        if (mToken != null) {
+            mToken.throwIfCancelled();
+        }
+    }
+
+    private boolean isUnique(byte[] cells) {
+        if (mWidth >= PROPAGATION_MIN_WIDTH) {
+            return mSolver.solvesByPropagation(cells);
+        }
+        return isUniqueBySearch(cells);
+    }
+
+    private boolean isUniqueBySearch(byte[] cells) {
+        mSolver.setCancellationToken(new CancellationToken(UNIQUENESS_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        try {
+            return mSolver.checkUniqueness(cells, null) == Uniqueness.UNIQUE;
+        } catch (CancellationException e) {
+            return false;
+        } finally {
+            mSolver.setCancellationToken(null);
+        }
+    }
+
+    private void shuffleDigits(byte[] digits) {
+        for (int k = 0; k < mWidth; k++) {
+            digits[k] = (byte) (k + 1);
+        }
+        for (int k = mWidth - 1; k > 0; k--) {
+            int swap = mRandom.nextInt(k + 1);
+            byte tmp = digits[k];
+            digits[k] = digits[swap];
+            digits[swap] = tmp;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package github.me_asri.ansu.core;
+
+/**
+ * Rating of a puzzle by the hardest technique it needs and the search effort beyond that.
+ * <p>
+ * Grades are ordered by {@link #getScore()}, which packs both into a single int so it can be
+ * stored next to the puzzle.
+ */
+public class Grade implements Comparable<Grade> {
+    static private final int NODE_BITS = 20;
+    static private final long MAX_NODES = (1 << NODE_BITS) - 1;
+
+    static public final Grade UNSOLVABLE = new Grade(-1);
+
+    private final int mScore;
+
+    private Grade(int score) {
+        mScore = score;
+    }
+
+    static Grade of(Technique hardest, long searchNodes) {
+        int technique = (hardest == null) ? 0 : hardest.ordinal() + 1;
+        return new Grade((technique << NODE_BITS) | (int) Math.min(searchNodes, MAX_NODES));
+    }
+
+    /**
+     * @param score value previously returned by {@link #getScore()}
+     */
+    static public Grade fromScore(int score) {
+        return (score < 0) ? UNSOLVABLE : new Grade(score);
+    }
+
+    public int getScore() {
+        return mScore;
+    }
+
+    public boolean isSolvable() {
+        return mScore >= 0;
+    }
+
+    /**
+     * @return hardest technique needed, null for unsolvable or already solved puzzles
+     */
+    public Technique getHardestTechnique() {
+        int technique = mScore >>> NODE_BITS;
+        return (mScore <= 0 || technique == 0) ? null : Technique.values()[technique - 1];
+    }
+
+    /**
+     * @return search branches needed after logic stalled, saturating at about one million
+     */
+    public long getSearchNodes() {
+        return (mScore < 0) ? 0 : mScore & MAX_NODES;
+    }
+
+    public Difficulty getDifficulty() {
+        return isSolvable() ? Difficulty.of(getHardestTechnique()) : null;
+    }
+
+    public boolean isWithin(Difficulty min, Difficulty max) {
+        Difficulty difficulty = getDifficulty();
+        return difficulty != null && difficulty.compareTo(min) >= 0 && difficulty.compareTo(max) <= 0;
+    }
+
+    @Override
+    public int compareTo(Grade other) {
+        return Integer.compare(mScore, other.mScore);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Grade && ((Grade) other).mScore == mScore;
+    }
+
+    @Override
+    public int hashCode() {
+        return mScore;
+    }
+
+    @Override
+    public String toString() {
+        return isSolvable() ? getDifficulty() + " (" + getHardestTechnique() + ", " + getSearchNodes() + ")" : "UNSOLVABLE";
+    }
+}
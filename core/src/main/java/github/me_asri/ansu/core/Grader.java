@@ -0,0 +1,47 @@
+package github.me_asri.ansu.core;
+
+/**
+ * Rates puzzles with {@link LogicSolver}.
+ * <p>
+ * Instances are not thread safe but may be reused for any number of puzzles of the same size.
+ */
+public class Grader {
+    private final LogicSolver mSolver;
+
+    public Grader(int blockWidth) {
+        mSolver = new LogicSolver(blockWidth);
+    }
+
+    static public Grader forWidth(int width) {
+        return new Grader(Grids.blockWidth(width));
+    }
+
+    /**
+     * @see LogicSolver#setCancellationToken(CancellationToken)
+     */
+    public void setCancellationToken(CancellationToken token) {
+        mSolver.setCancellationToken(token);
+    }
+
+    public Grade grade(byte[] puzzle) {
+        SolveTrace trace = mSolver.solve(puzzle);
+        if (!trace.isSolved()) {
+            return Grade.UNSOLVABLE;
+        }
+
+        return Grade.of(trace.getHardestTechnique(), trace.getSearchNodes());
+    }
+
+    /**
+     * Grades the puzzle unless it already carries a grade.
+     */
+    public Grade grade(Puzzle puzzle) {
+        Grade grade = puzzle.getGrade();
+        if (grade == null) {
+            grade = grade(puzzle.getCells());
+            puzzle.setGrade(grade);
+        }
+
+        return grade;
+    }
+}
@@ -0,0 +1,112 @@
+package github.me_asri.ansu.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.security.InvalidParameterException;
+
+import de.sfuhrm.sudoku.GameMatrix;
+import de.sfuhrm.sudoku.GameMatrixFactory;
+import de.sfuhrm.sudoku.GameSchema;
+import de.sfuhrm.sudoku.GameSchemas;
+
+/**
+ * Conversions between {@link GameMatrix}, flat row-major cell arrays and their text form.
+ */
+public class Grids {
+    private Grids() {
+    }
+
+    static public int blockWidth(int width) {
+        int blockWidth = (int) Math.round(Math.sqrt(width));
+        if (blockWidth * blockWidth != width) {
+            throw new InvalidParameterException("Unsupported width");
+        }
+
+        return blockWidth;
+    }
+
+    /**
+     * @return the schema of a 4x4, 9x9, 16x16 or 25x25 grid
+     */
+    static public GameSchema schema(int width) {
+        switch (width) {
+            case 4:
+                return GameSchemas.SCHEMA_4X4;
+            case 9:
+                return GameSchemas.SCHEMA_9X9;
+            case 16:
+                return GameSchemas.SCHEMA_16X16;
+            case 25:
+                return GameSchemas.SCHEMA_25X25;
+            default:
+                throw new InvalidParameterException("Unsupported width");
+        }
+    }
+
+    /**
+     * @return width of the grid held by a flat cell array
+     */
+    static public int width(byte[] cells) {
+        int width = (int) Math.round(Math.sqrt(cells.length));
+        if (width * width != cells.length) {
+            throw new InvalidParameterException("Invalid puzzle size");
+        }
+
+        return width;
+    }
+
+    /**
+     * @return the character a cell is written as: {@code .} if empty, digits up to 9 and
+     * upper case letters from {@code A} for 10 on
+     */
+    static public char toChar(byte value, int width) {
+        return (value == 0) ? '.' : Character.toUpperCase(Character.forDigit(value, width + 1));
+    }
+
+    /**
+     * Appends the cells as one character each, see {@link #toChar(byte, int)}.
+     */
+    static public void appendCells(StringBuilder builder, byte[] cells, int width) {
+        for (byte value : cells) {
+            builder.append(toChar(value, width));
+        }
+    }
+
+    /**
+     * Writes the cells as one character each, see {@link #toChar(byte, int)}.
+     */
+    static public void writeCells(Writer writer, byte[] cells, int width) throws IOException {
+        for (byte value : cells) {
+            writer.write(toChar(value, width));
+        }
+    }
+
+    static public byte[] toArray(GameMatrix matrix) {
+        int width = matrix.getSchema().getWidth();
+        byte[] cells = new byte[width * width];
+
+        byte[][] array = matrix.getArray();
+        for (int i = 0; i < width; i++) {
+            System.arraycopy(array[i], 0, cells, i * width, width);
+        }
+
+        return cells;
+    }
+
+    static public GameMatrix toMatrix(GameSchema schema, byte[] cells) {
+        int width = schema.getWidth();
+        if (cells.length != width * width) {
+            throw new InvalidParameterException("Invalid puzzle size");
+        }
+
+        byte[][] array = new byte[width][width];
+        for (int i = 0; i < width; i++) {
+            System.arraycopy(cells, i * width, array[i], 0, width);
+        }
+
+        GameMatrix matrix = new GameMatrixFactory().newGameMatrix(schema);
+        matrix.setAll(array);
+
+        return matrix;
+    }
+}
@@ -0,0 +1,621 @@
+package github.me_asri.ansu.core;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Step solver applying human techniques in order of difficulty.
+ * <p>
+ * Every step is either a placement or a set of candidate eliminations and is recorded in a
+ * {@link SolveTrace}. After each step the search restarts from the easiest technique. When no
+ * technique applies, a digit is taken from a {@link BitSolver} solution of the current grid and
+ * recorded as a {@link Technique#SEARCH} step.
+ * <p>
+ * Instances are not thread safe but may be reused for any number of puzzles of the same size.
+ */
+public class LogicSolver {
+    private final int mWidth;
+    private final int mSize;
+
+    // Rows at [0, width), columns at [width, 2 * width), blocks at [2 * width, 3 * width)
+    private final int[][] mUnits;
+    private final int[][] mPeers;
+    private final int[] mRowOf;
+    private final int[] mColOf;
+    private final int[] mBoxOf;
+
+    private final BitSolver mSearchSolver;
+
+    private final byte[] mCells;
+    private final int[] mCandidates;
+    private int mEmpty;
+
+    private List<SolveStep> mSteps;
+    private Technique mHardest;
+    private byte[] mSearchSolution;
+    private boolean mContradiction;
+
+    private int[] mElims = new int[64];
+    private int mElimCount;
+
+    // Scratch space for subset and fish searches
+    private final int[] mComboItems;
+    private final int[] mComboMasks;
+
+    public LogicSolver(int blockWidth) {
+        mSearchSolver = new BitSolver(blockWidth);
+
+        mWidth = blockWidth * blockWidth;
+        mSize = mWidth * mWidth;
+
+        mUnits = new int[3 * mWidth][mWidth];
+        mRowOf = new int[mSize];
+        mColOf = new int[mSize];
+        mBoxOf = new int[mSize];
+        for (int c = 0; c < mSize; c++) {
+            int row = c / mWidth;
+            int col = c % mWidth;
+            int box = (row / blockWidth) * blockWidth + col / blockWidth;
+
+            mRowOf[c] = row;
+            mColOf[c] = col;
+            mBoxOf[c] = box;
+
+            mUnits[row][col] = c;
+            mUnits[mWidth + col][row] = c;
+            mUnits[2 * mWidth + box][(row % blockWidth) * blockWidth + col % blockWidth] = c;
+        }
+
+        mPeers = new int[mSize][];
+        int peerCount = 3 * (mWidth - 1) - 2 * (blockWidth - 1);
+        for (int c = 0; c < mSize; c++) {
+            int[] peers = new int[peerCount];
+            int count = 0;
+            for (int p = 0; p < mSize; p++) {
+                if (p != c && (mRowOf[p] == mRowOf[c] || mColOf[p] == mColOf[c] || mBoxOf[p] == mBoxOf[c])) {
+                    peers[count++] = p;
+                }
+            }
+            mPeers[c] = peers;
+        }
+
+        mCells = new byte[mSize];
+        mCandidates = new int[mSize];
+
+        mComboItems = new int[mWidth];
+        mComboMasks = new int[mWidth];
+    }
+
+    static public LogicSolver forWidth(int width) {
+        return new LogicSolver(Grids.blockWidth(width));
+    }
+
+    public void setCancellationToken(CancellationToken token) {
+        mSearchSolver.setCancellationToken(token);
+    }
+
+    /**
+     * Solves the given puzzle step by step.
+     *
+     * @return the trace, unsolved if the puzzle has no solution
+     */
+    public SolveTrace solve(byte[] puzzle) {
+        return solve(puzzle, null);
+    }
+
+    /**
+     * Solves the given puzzle step by step, taking {@link Technique#SEARCH} steps from a solution
+     * found before instead of searching again. Every step a technique takes holds in all
+     * solutions, so the known one stays consistent with the grid. No search nodes are counted
+     * then.
+     *
+     * @param known a solution of the puzzle or null to search when needed
+     * @return the trace, unsolved if the puzzle has no solution
+     */
+    public SolveTrace solve(byte[] puzzle, byte[] known) {
+        if (puzzle.length != mSize || (known != null && known.length != mSize)) {
+            throw new InvalidParameterException("Invalid puzzle size");
+        }
+
+        mSteps = new ArrayList<>();
+        mHardest = null;
+        mSearchSolution = known;
+        mContradiction = false;
+        long searchNodes = 0;
+
+        if (!load(puzzle)) {
+            return new SolveTrace(mSteps, null, null, 0);
+        }
+
+        while (mEmpty > 0 && !mContradiction) {
+            if (applyTechnique()) {
+                continue;
+            }
+            if (mContradiction) {
+                break;
+            }
+
+            if (mSearchSolution == null) {
+                mSearchSolution = mSearchSolver.solve(mCells);
+                searchNodes = mSearchSolver.getNodeCount();
+                if (mSearchSolution == null) {
+                    mContradiction = true;
+                    break;
+                }
+            }
+            placeFromSearch();
+        }
+
+        byte[] solution = mContradiction ? null : mCells.clone();
+        return new SolveTrace(mSteps, solution, mHardest, searchNodes);
+    }
+
+    private boolean load(byte[] puzzle) {
+        mEmpty = 0;
+        Arrays.fill(mCandidates, (1 << mWidth) - 1);
+
+        for (int c = 0; c < mSize; c++) {
+            mCells[c] = 0;
+        }
+        for (int c = 0; c < mSize; c++) {
+            byte value = puzzle[c];
+            if (value == 0) {
+                mEmpty++;
+                continue;
+            }
+            if (value < 0 || value > mWidth || (mCandidates[c] & (1 << (value - 1))) == 0) {
+                return false;
+            }
+
+            set(c, value);
+        }
+
+        for (int c = 0; c < mSize; c++) {
+            if (mCells[c] == 0 && mCandidates[c] == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void set(int cell, byte value) {
+        int bit = 1 << (value - 1);
+
+        mCells[cell] = value;
+        mCandidates[cell] = 0;
+        for (int peer : mPeers[cell]) {
+            mCandidates[peer] &= ~bit;
+        }
+    }
+
+    private void place(Technique technique, int cell, byte value) {
+        set(cell, value);
+        mEmpty--;
+
+        for (int peer : mPeers[cell]) {
+            if (mCells[peer] == 0 && mCandidates[peer] == 0) {
+                mContradiction = true;
+            }
+        }
+
+        mSteps.add(SolveStep.placement(technique, cell, value));
+        record(technique);
+    }
+
+    private void placeFromSearch() {
+        // Prefer the most constrained cell so the guess carries the most information
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int c = 0; c < mSize; c++) {
+            if (mCells[c] == 0 && Integer.bitCount(mCandidates[c]) < bestCount) {
+                best = c;
+                bestCount = Integer.bitCount(mCandidates[c]);
+            }
+        }
+
+        place(Technique.SEARCH, best, mSearchSolution[best]);
+    }
+
+    private void record(Technique technique) {
+        if (mHardest == null || technique.compareTo(mHardest) > 0) {
+            mHardest = technique;
+        }
+    }
+
+    private boolean applyTechnique() {
+        return hiddenSingle()
+                || nakedSingle()
+                || pointing()
+                || boxLine()
+                || nakedSubset(2, Technique.NAKED_PAIR)
+                || hiddenSubset(2, Technique.HIDDEN_PAIR)
+                || nakedSubset(3, Technique.NAKED_TRIPLE)
+                || hiddenSubset(3, Technique.HIDDEN_TRIPLE)
+                || fish(2, Technique.X_WING)
+                || fish(3, Technique.SWORDFISH);
+    }
+
+    private boolean nakedSingle() {
+        for (int c = 0; c < mSize; c++) {
+            if (mCells[c] != 0) {
+                continue;
+            }
+
+            int cand = mCandidates[c];
+            if (cand == 0) {
+                mContradiction = true;
+                return false;
+            }
+            if ((cand & (cand - 1)) == 0) {
+                place(Technique.NAKED_SINGLE, c, digitOf(cand));
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hiddenSingle() {
+        for (int[] unit : mUnits) {
+            int once = 0;
+            int twice = 0;
+            int placed = 0;
+            for (int c : unit) {
+                if (mCells[c] != 0) {
+                    placed |= 1 << (mCells[c] - 1);
+                    continue;
+                }
+
+                twice |= once & mCandidates[c];
+                once |= mCandidates[c];
+            }
+
+            if ((once | placed) != (1 << mWidth) - 1) {
+                mContradiction = true;
+                return false;
+            }
+
+            int hidden = once & ~twice;
+            if (hidden == 0) {
+                continue;
+            }
+
+            int bit = hidden & -hidden;
+            for (int c : unit) {
+                if ((mCandidates[c] & bit) != 0) {
+                    place(Technique.HIDDEN_SINGLE, c, digitOf(bit));
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean pointing() {
+        for (int box = 0; box < mWidth; box++) {
+            int[] unit = mUnits[2 * mWidth + box];
+            for (int d = 0; d < mWidth; d++) {
+                int bit = 1 << d;
+
+                int row = -1;
+                int col = -1;
+                boolean sameRow = true;
+                boolean sameCol = true;
+                for (int c : unit) {
+                    if ((mCandidates[c] & bit) == 0) {
+                        continue;
+                    }
+
+                    if (row < 0) {
+                        row = mRowOf[c];
+                        col = mColOf[c];
+                    } else {
+                        sameRow &= (mRowOf[c] == row);
+                        sameCol &= (mColOf[c] == col);
+                    }
+                }
+                if (row < 0) {
+                    continue;
+                }
+
+                beginEliminations();
+                if (sameRow) {
+                    for (int c : mUnits[row]) {
+                        if (mBoxOf[c] != box) {
+                            eliminate(c, bit);
+                        }
+                    }
+                }
+                if (sameCol) {
+                    for (int c : mUnits[mWidth + col]) {
+                        if (mBoxOf[c] != box) {
+                            eliminate(c, bit);
+                        }
+                    }
+                }
+                if (commitEliminations(Technique.POINTING)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean boxLine() {
+        for (int line = 0; line < 2 * mWidth; line++) {
+            int[] unit = mUnits[line];
+            for (int d = 0; d < mWidth; d++) {
+                int bit = 1 << d;
+
+                int box = -1;
+                boolean sameBox = true;
+                for (int c : unit) {
+                    if ((mCandidates[c] & bit) == 0) {
+                        continue;
+                    }
+
+                    if (box < 0) {
+                        box = mBoxOf[c];
+                    } else {
+                        sameBox &= (mBoxOf[c] == box);
+                    }
+                }
+                if (box < 0 || !sameBox) {
+                    continue;
+                }
+
+                beginEliminations();
+                for (int c : mUnits[2 * mWidth + box]) {
+                    boolean inLine = (line < mWidth) ? (mRowOf[c] == line) : (mColOf[c] == line - mWidth);
+                    if (!inLine) {
+                        eliminate(c, bit);
+                    }
+                }
+                if (commitEliminations(Technique.BOX_LINE)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds {@code size} cells of a unit whose candidates together contain {@code size} digits.
+     */
+    private boolean nakedSubset(int size, Technique technique) {
+        for (int[] unit : mUnits) {
+            int count = 0;
+            for (int k = 0; k < mWidth; k++) {
+                int bits = Integer.bitCount(mCandidates[unit[k]]);
+                if (bits >= 2 && bits <= size) {
+                    mComboItems[count] = k;
+                    mComboMasks[count] = mCandidates[unit[k]];
+                    count++;
+                }
+            }
+            if (count < size) {
+                continue;
+            }
+
+            if (nakedCombo(unit, technique, size, count, 0, 0, 0, 0)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean nakedCombo(int[] unit, Technique technique, int size, int count,
+                               int start, int depth, int union, int members) {
+        if (depth == size) {
+            if (Integer.bitCount(union) != size) {
+                return false;
+            }
+
+            beginEliminations();
+            for (int k = 0; k < mWidth; k++) {
+                if ((members & (1 << k)) == 0) {
+                    eliminate(unit[k], union);
+                }
+            }
+            return commitEliminations(technique);
+        }
+
+        for (int i = start; i < count; i++) {
+            int nextUnion = union | mComboMasks[i];
+            if (Integer.bitCount(nextUnion) > size) {
+                continue;
+            }
+            if (nakedCombo(unit, technique, size, count, i + 1, depth + 1, nextUnion, members | (1 << mComboItems[i]))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds {@code size} digits of a unit which together fit into {@code size} cells.
+     */
+    private boolean hiddenSubset(int size, Technique technique) {
+        for (int[] unit : mUnits) {
+            int count = 0;
+            for (int d = 0; d < mWidth; d++) {
+                int positions = 0;
+                for (int k = 0; k < mWidth; k++) {
+                    if ((mCandidates[unit[k]] & (1 << d)) != 0) {
+                        positions |= 1 << k;
+                    }
+                }
+
+                int bits = Integer.bitCount(positions);
+                if (bits >= 2 && bits <= size) {
+                    mComboItems[count] = d;
+                    mComboMasks[count] = positions;
+                    count++;
+                }
+            }
+            if (count < size) {
+                continue;
+            }
+
+            if (hiddenCombo(unit, technique, size, count, 0, 0, 0, 0)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hiddenCombo(int[] unit, Technique technique, int size, int count,
+                                int start, int depth, int positions, int digits) {
+        if (depth == size) {
+            if (Integer.bitCount(positions) != size) {
+                return false;
+            }
+
+            beginEliminations();
+            for (int k = 0; k < mWidth; k++) {
+                if ((positions & (1 << k)) != 0) {
+                    eliminate(unit[k], ~digits);
+                }
+            }
+            return commitEliminations(technique);
+        }
+
+        for (int i = start; i < count; i++) {
+            int nextPositions = positions | mComboMasks[i];
+            if (Integer.bitCount(nextPositions) > size) {
+                continue;
+            }
+            if (hiddenCombo(unit, technique, size, count, i + 1, depth + 1, nextPositions, digits | (1 << mComboItems[i]))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * X-Wing for size 2 and Swordfish for size 3, with rows or columns as base lines.
+     */
+    private boolean fish(int size, Technique technique) {
+        for (int d = 0; d < mWidth; d++) {
+            int bit = 1 << d;
+
+            for (int base = 0; base < 2; base++) {
+                int count = 0;
+                for (int line = 0; line < mWidth; line++) {
+                    int[] unit = mUnits[base * mWidth + line];
+
+                    int positions = 0;
+                    for (int k = 0; k < mWidth; k++) {
+                        if ((mCandidates[unit[k]] & bit) != 0) {
+                            positions |= 1 << k;
+                        }
+                    }
+
+                    int bits = Integer.bitCount(positions);
+                    if (bits >= 2 && bits <= size) {
+                        mComboItems[count] = line;
+                        mComboMasks[count] = positions;
+                        count++;
+                    }
+                }
+                if (count < size) {
+                    continue;
+                }
+
+                if (fishCombo(technique, bit, base, size, count, 0, 0, 0, 0)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private boolean fishCombo(Technique technique, int bit, int base, int size, int count,
+                              int start, int depth, int covers, int lines) {
+        if (depth == size) {
+            if (Integer.bitCount(covers) != size) {
+                return false;
+            }
+
+            int cover = 1 - base;
+            beginEliminations();
+            for (int k = 0; k < mWidth; k++) {
+                if ((covers & (1 << k)) == 0) {
+                    continue;
+                }
+
+                int[] unit = mUnits[cover * mWidth + k];
+                for (int line = 0; line < mWidth; line++) {
+                    if ((lines & (1 << line)) == 0) {
+                        eliminate(unit[line], bit);
+                    }
+                }
+            }
+            return commitEliminations(technique);
+        }
+
+        for (int i = start; i < count; i++) {
+            int nextCovers = covers | mComboMasks[i];
+            if (Integer.bitCount(nextCovers) > size) {
+                continue;
+            }
+            if (fishCombo(technique, bit, base, size, count, i + 1, depth + 1, nextCovers, lines | (1 << mComboItems[i]))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void beginEliminations() {
+        mElimCount = 0;
+    }
+
+    private void eliminate(int cell, int mask) {
+        int removed = mCandidates[cell] & mask;
+        if (removed == 0) {
+            return;
+        }
+
+        mCandidates[cell] &= ~removed;
+        if (mCandidates[cell] == 0 && mCells[cell] == 0) {
+            mContradiction = true;
+        }
+
+        while (removed != 0) {
+            int bit = removed & -removed;
+            removed ^= bit;
+
+            if (mElimCount == mElims.length) {
+                mElims = Arrays.copyOf(mElims, mElims.length * 2);
+            }
+            mElims[mElimCount++] = SolveStep.packElimination(cell, digitOf(bit));
+        }
+    }
+
+    private boolean commitEliminations(Technique technique) {
+        if (mElimCount == 0) {
+            return false;
+        }
+
+        mSteps.add(SolveStep.elimination(technique, Arrays.copyOf(mElims, mElimCount)));
+        record(technique);
+
+        return true;
+    }
+
+    static private byte digitOf(int bit) {
+        return (byte) (Integer.numberOfTrailingZeros(bit) + 1);
+    }
+}
@@ -0,0 +1,103 @@
+package github.me_asri.ansu.core;
+
+/**
+ * Set of longs in a single open-addressing array, without boxing.
+ * <p>
+ * Meant for well mixed keys such as {@link Canonicalizer#fingerprint(byte[])}, ten million of
+ * which fit in about 128 MB. Not thread safe.
+ */
+public class LongHashSet {
+    static private final float LOAD_FACTOR = 0.7f;
+
+    // 0 marks a free slot, the key 0 itself is tracked separately
+    private long[] mTable;
+    private boolean mHasZero = false;
+    private int mSize = 0;
+    private int mThreshold;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    /**
+     * @param expected number of keys to make room for up front
+     */
+    public LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+        mTable = new long[capacity];
+        mThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * @return true if the key was not in the set yet
+     */
+    public boolean add(long key) {
+        if (key == 0) {
+            if (mHasZero) {
+                return false;
+            }
+            mHasZero = true;
+            mSize++;
+            return true;
+        }
+
+        int mask = mTable.length - 1;
+        int slot = index(key, mask);
+        while (mTable[slot] != 0) {
+            if (mTable[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        mTable[slot] = key;
+        if (++mSize >= mThreshold) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) {
+            return mHasZero;
+        }
+
+        int mask = mTable.length - 1;
+        int slot = index(key, mask);
+        while (mTable[slot] != 0) {
+            if (mTable[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    static private int index(long key, int mask) {
+        // Fold the high bits in, so keys differing only there still spread
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] old = mTable;
+        mTable = new long[old.length * 2];
+        mThreshold = (int) (mTable.length * LOAD_FACTOR);
+
+        int mask = mTable.length - 1;
+        for (long key : old) {
+            if (key == 0) {
+                continue;
+            }
+
+            int slot = index(key, mask);
+            while (mTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            mTable[slot] = key;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package github.me_asri.ansu.core;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide registry of counters and {@link LatencyHistogram}s.
+ * <p>
+ * Instruments are looked up by name once, typically into static final fields, and recorded
+ * through the static helpers. Recording is off by default, in which case {@link #start()} and
+ * the helpers only read a volatile flag, so instrumented hot paths pay next to nothing.
+ */
+public class Metrics {
+    static private final long NOT_STARTED = Long.MIN_VALUE;
+
+    static private final Map<String, AtomicLong> COUNTERS = new ConcurrentSkipListMap<>();
+    static private final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+    static private volatile boolean sEnabled = false;
+
+    private Metrics() {
+    }
+
+    static public boolean isEnabled() {
+        return sEnabled;
+    }
+
+    static public void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * @return the counter of the given name, created on first use
+     */
+    static public AtomicLong counter(String name) {
+        AtomicLong counter = COUNTERS.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = COUNTERS.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * @return the latency histogram of the given name, in nanoseconds, created on first use
+     */
+    static public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = HISTOGRAMS.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = HISTOGRAMS.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    static public void increment(AtomicLong counter) {
+        if (sEnabled) {
+            counter.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return start time to pass to {@link #stop(LatencyHistogram, long)}, a dummy if disabled
+     */
+    static public long start() {
+        return sEnabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    /**
+     * Records the time passed since {@link #start()}, unless recording was disabled then.
+     */
+    static public void stop(LatencyHistogram histogram, long start) {
+        if (start != NOT_STARTED) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    static public void reset() {
+        for (AtomicLong counter : COUNTERS.values()) {
+            counter.set(0);
+        }
+        for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * @return one line per instrument, histograms as count and percentiles in microseconds
+     */
+    static public String toText() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, AtomicLong> entry : COUNTERS.entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            builder.append(String.format(Locale.ROOT, "%s: %d, p50 %d us, p99 %d us, max %d us%n",
+                    entry.getKey(), histogram.getCount(), micros(histogram.getPercentile(50)),
+                    micros(histogram.getPercentile(99)), micros(histogram.getMax())));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return all instruments as a JSON object, latencies in microseconds
+     */
+    static public String toJson() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\n  \"enabled\": ").append(sEnabled).append(",\n  \"counters\": {");
+
+        String separator = "\n";
+        for (Map.Entry<String, AtomicLong> entry : COUNTERS.entrySet()) {
+            builder.append(separator).append("    ").append(quote(entry.getKey())).append(": ")
+                    .append(entry.getValue().get());
+            separator = ",\n";
+        }
+
+        builder.append("\n  },\n  \"histograms\": {");
+        separator = "\n";
+        for (Map.Entry<String, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            builder.append(separator).append("    ").append(quote(entry.getKey())).append(": {")
+                    .append("\"count\": ").append(histogram.getCount())
+                    .append(", \"p50_us\": ").append(micros(histogram.getPercentile(50)))
+                    .append(", \"p90_us\": ").append(micros(histogram.getPercentile(90)))
+                    .append(", \"p99_us\": ").append(micros(histogram.getPercentile(99)))
+                    .append(", \"max_us\": ").append(micros(histogram.getMax()))
+                    .append('}');
+            separator = ",\n";
+        }
+
+        return builder.append("\n  }\n}\n").toString();
+    }
+
+    static private long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    static private String quote(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
@@ -0,0 +1,177 @@
+package github.me_asri.ansu.core;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+/**
+ * Append-only journal of board changes with an undo/redo cursor.
+ * <p>
+ * Every move is a single int holding the cell, the previous and the new value, whether it
+ * changed the given (locked) value rather than the answer, and whether it continues the group
+ * of the move before it. Moves recorded between {@link #beginGroup()} and {@link #endGroup()}
+ * form one group and are undone and redone together. Recording after an undo drops the moves
+ * that could have been redone.
+ * <p>
+ * {@link #getDirtyFrom()} tells which moves changed since {@link #markSynced()}, so only those
+ * need to be written when the journal is persisted.
+ */
+public class MoveJournal {
+    static private final int CELL_MASK = 0x3FF;
+    static private final int VALUE_MASK = 0x1F;
+    static private final int OLD_SHIFT = 10;
+    static private final int NEW_SHIFT = 15;
+    static private final int GIVEN_FLAG = 1 << 20;
+    static private final int CONTINUES_FLAG = 1 << 21;
+
+    public interface Target {
+        void apply(int cell, int value, boolean given);
+    }
+
+    private int[] mMoves = new int[64];
+    private int mSize = 0;
+    private int mCursor = 0;
+    private int mDirtyFrom = 0;
+
+    private int mGroupDepth = 0;
+    private boolean mGroupStarted = false;
+
+    /**
+     * Records a move, dropping the moves that could have been redone.
+     */
+    public void record(int cell, int oldValue, int newValue, boolean given) {
+        if (cell < 0 || cell > CELL_MASK || oldValue < 0 || oldValue > VALUE_MASK
+                || newValue < 0 || newValue > VALUE_MASK) {
+            throw new InvalidParameterException("Move out of range");
+        }
+
+        int move = cell | oldValue << OLD_SHIFT | newValue << NEW_SHIFT;
+        if (given) {
+            move |= GIVEN_FLAG;
+        }
+        if (mGroupDepth > 0) {
+            if (mGroupStarted) {
+                move |= CONTINUES_FLAG;
+            }
+            mGroupStarted = true;
+        }
+
+        if (mCursor < mSize) {
+            mSize = mCursor;
+            mDirtyFrom = Math.min(mDirtyFrom, mSize);
+        }
+        if (mSize == mMoves.length) {
+            mMoves = Arrays.copyOf(mMoves, mMoves.length * 2);
+        }
+        mMoves[mSize++] = move;
+        mCursor = mSize;
+    }
+
+    /**
+     * Starts a group of moves undone as one. Groups may be nested, only the outermost counts.
+     */
+    public void beginGroup() {
+        if (mGroupDepth++ == 0) {
+            mGroupStarted = false;
+        }
+    }
+
+    public void endGroup() {
+        if (mGroupDepth == 0) {
+            throw new IllegalStateException("No group to end");
+        }
+        mGroupDepth--;
+    }
+
+    public boolean canUndo() {
+        return mCursor > 0;
+    }
+
+    public boolean canRedo() {
+        return mCursor < mSize;
+    }
+
+    /**
+     * Reverts the last group of moves, passing the previous values to the target in reverse order.
+     *
+     * @return false if there is nothing to undo
+     */
+    public boolean undo(Target target) {
+        if (mCursor == 0) {
+            return false;
+        }
+
+        int move;
+        do {
+            move = mMoves[--mCursor];
+            target.apply(move & CELL_MASK, (move >>> OLD_SHIFT) & VALUE_MASK, (move & GIVEN_FLAG) != 0);
+        } while ((move & CONTINUES_FLAG) != 0 && mCursor > 0);
+
+        return true;
+    }
+
+    /**
+     * Applies the next group of moves again, passing the new values to the target.
+     *
+     * @return false if there is nothing to redo
+     */
+    public boolean redo(Target target) {
+        if (mCursor == mSize) {
+            return false;
+        }
+
+        do {
+            int move = mMoves[mCursor++];
+            target.apply(move & CELL_MASK, (move >>> NEW_SHIFT) & VALUE_MASK, (move & GIVEN_FLAG) != 0);
+        } while (mCursor < mSize && (mMoves[mCursor] & CONTINUES_FLAG) != 0);
+
+        return true;
+    }
+
+    public void clear() {
+        mSize = 0;
+        mCursor = 0;
+        mDirtyFrom = 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getCursor() {
+        return mCursor;
+    }
+
+    /**
+     * @return index of the first move changed since the last {@link #markSynced()}
+     */
+    public int getDirtyFrom() {
+        return Math.min(mDirtyFrom, mSize);
+    }
+
+    public void markSynced() {
+        mDirtyFrom = mSize;
+    }
+
+    /**
+     * @return a copy of the packed moves from the given index on
+     */
+    public int[] copyMoves(int from) {
+        return Arrays.copyOfRange(mMoves, from, mSize);
+    }
+
+    /**
+     * Replaces the journal with packed moves returned by {@link #copyMoves(int)}. The loaded
+     * moves count as synced.
+     */
+    public void load(int[] moves, int cursor) {
+        if (cursor < 0 || cursor > moves.length) {
+            throw new InvalidParameterException("Invalid journal cursor");
+        }
+
+        mMoves = Arrays.copyOf(moves, Math.max(64, moves.length * 2));
+        mSize = moves.length;
+        mCursor = cursor;
+        mDirtyFrom = mSize;
+        mGroupDepth = 0;
+    }
+}
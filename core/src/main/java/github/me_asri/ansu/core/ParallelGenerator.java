@@ -0,0 +1,149 @@
+package github.me_asri.ansu.core;
+
+import java.security.InvalidParameterException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs one {@link Generator} per thread of a work-stealing pool to produce riddles in bulk.
+ * <p>
+ * Every task digs riddles from new full grids until one meets the goals set, so grids that miss
+ * the target number of givens or minimality only hold up their own thread. Only a few tasks per
+ * thread are in flight at a time, so any number of riddles can be streamed out. Riddles are
+ * handed out in the order they are finished.
+ * <p>
+ * Goals must not be changed while {@link #generate(int, Consumer)} is running. A task that
+ * digs {@link Generator#getMaxAttempts()} grids without meeting them fails the whole run.
+ */
+public class ParallelGenerator {
+    static private final int TASKS_PER_THREAD = 2;
+
+    private final int mWidth;
+    private final int mThreads;
+
+    private int mTargetClues = 0;
+    private Symmetry mSymmetry = Symmetry.NONE;
+    private boolean mMinimal = false;
+
+    private final AtomicLong mAttempts = new AtomicLong();
+    private long mGenerated = 0;
+    private long mElapsedNanos = 0;
+
+    public ParallelGenerator(int width, int threads) {
+        Grids.blockWidth(width);
+
+        mWidth = width;
+        mThreads = threads;
+    }
+
+    /**
+     * @see Generator#setTargetClues(int)
+     */
+    public void setTargetClues(int clues) {
+        if (clues < 0 || clues > mWidth * mWidth) {
+            throw new InvalidParameterException("Invalid number of givens");
+        }
+        mTargetClues = clues;
+    }
+
+    /**
+     * @see Generator#setSymmetry(Symmetry)
+     */
+    public void setSymmetry(Symmetry symmetry) {
+        mSymmetry = symmetry;
+    }
+
+    /**
+     * @see Generator#setMinimal(boolean)
+     */
+    public void setMinimal(boolean minimal) {
+        mMinimal = minimal;
+    }
+
+    /**
+     * Generates riddles on all threads of the pool and passes them to the consumer on the
+     * calling thread, returning once {@code count} riddles were consumed.
+     *
+     * @param consumer receives every riddle, without grade
+     * @throws IllegalStateException if a task gave up, see {@link Generator#createPuzzle()}
+     */
+    public void generate(int count, Consumer<Puzzle> consumer) throws InterruptedException {
+        ExecutorService pool = Executors.newWorkStealingPool(mThreads);
+        CompletionService<Puzzle> completion = new ExecutorCompletionService<>(pool);
+        ThreadLocal<Generator> generators = ThreadLocal.withInitial(this::newGenerator);
+
+        long startTime = System.nanoTime();
+        try {
+            int submitted = 0;
+            for (int done = 0; done < count; done++) {
+                while (submitted < count && submitted - done < mThreads * TASKS_PER_THREAD) {
+                    completion.submit(() -> createPuzzle(generators.get()));
+                    submitted++;
+                }
+
+                consumer.accept(completion.take().get());
+                mGenerated++;
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            mElapsedNanos += System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * @return number of full grids dug so far, including those discarded
+     */
+    public long getAttempts() {
+        return mAttempts.get();
+    }
+
+    /**
+     * @return number of riddles consumed so far
+     */
+    public long getGenerated() {
+        return mGenerated;
+    }
+
+    /**
+     * @return riddles consumed per second of {@link #generate(int, Consumer)} so far
+     */
+    public double getPuzzlesPerSecond() {
+        return (mElapsedNanos == 0) ? 0 : mGenerated / (mElapsedNanos / 1e9);
+    }
+
+    private Generator newGenerator() {
+        Generator generator = Generator.forWidth(mWidth);
+        generator.setTargetClues(mTargetClues);
+        generator.setSymmetry(mSymmetry);
+        generator.setMinimal(mMinimal);
+
+        return generator;
+    }
+
+    private Puzzle createPuzzle(Generator generator) {
+        for (int attempt = 0; attempt < generator.getMaxAttempts(); attempt++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Generator pool shut down");
+            }
+
+            mAttempts.incrementAndGet();
+            byte[] riddle = generator.createRiddle(generator.createFull());
+            if (riddle != null) {
+                return new Puzzle(riddle);
+            }
+        }
+
+        throw new IllegalStateException("No riddle met the goals in " + generator.getMaxAttempts() + " attempts");
+    }
+}
@@ -0,0 +1,291 @@
+package github.me_asri.ansu.core;
+
+import java.security.InvalidParameterException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Races several {@link BitSolver} search orders against each other, so a puzzle that is
+ * pathological for one order is usually trivial for another.
+ * <p>
+ * Every puzzle is first given a short head start with the plain search order on the calling
+ * thread, which settles nearly all puzzles without involving other threads. Only if that runs
+ * out of nodes, every strategy is started on the executor. The first strategy to finish wins and
+ * the others are cancelled, and the call returns once all of them have stopped.
+ * <p>
+ * Instances are not thread safe but may be reused for any number of puzzles of the same size.
+ * Any number of instances may share an executor.
+ */
+public class PortfolioSolver {
+    // Branches the plain search order may take alone before the race starts
+    static private final long HEAD_START_NODES = 4096;
+    // Branches of the first randomized restart, doubled on every restart
+    static private final long FIRST_RESTART_NODES = 1024;
+    // How often the caller's token is polled while waiting for the race
+    static private final long POLL_INTERVAL_MS = 10;
+
+    public enum Strategy {
+        /**
+         * Plain search order: most constrained cell first, ties broken by the first such cell,
+         * candidates in ascending order.
+         */
+        DEFAULT,
+        /**
+         * Searches the puzzle rotated by 180 degrees with its digits reversed, which breaks ties
+         * towards the last cell and tries candidates in descending order.
+         */
+        ROTATED,
+        /**
+         * Searches the transposed puzzle, which breaks ties column by column.
+         */
+        TRANSPOSED,
+        /**
+         * Tries candidates in random order, restarting with a new order and twice the node
+         * budget whenever the budget runs out.
+         */
+        RESTARTS
+    }
+
+    static private final AtomicLong RACES = Metrics.counter("solve.portfolio.races");
+    static private final AtomicLong[] WINS = new AtomicLong[Strategy.values().length];
+
+    static {
+        for (Strategy strategy : Strategy.values()) {
+            WINS[strategy.ordinal()] = Metrics.counter(
+                    "solve.portfolio.wins." + strategy.name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private final int mWidth;
+    private final int mSize;
+    private final ExecutorService mExecutor;
+    private final Strategy[] mStrategies;
+
+    private final BitSolver mHeadStart;
+    private final BitSolver[] mSolvers;
+    // Puzzle and first solution of every strategy, in its own orientation
+    private final byte[][] mPuzzles;
+    private final byte[][] mSolutions;
+    private final int[] mCounts;
+
+    private CancellationToken mToken = null;
+    private Strategy mWinner = null;
+
+    /**
+     * Creates a solver racing all strategies.
+     */
+    public PortfolioSolver(int width, ExecutorService executor) {
+        this(width, executor, Strategy.values());
+    }
+
+    public PortfolioSolver(int width, ExecutorService executor, Strategy... strategies) {
+        if (strategies.length == 0) {
+            throw new InvalidParameterException("No strategies");
+        }
+
+        mWidth = width;
+        mSize = width * width;
+        mExecutor = executor;
+        mStrategies = strategies.clone();
+
+        mHeadStart = BitSolver.forWidth(width);
+        mHeadStart.setNodeLimit(HEAD_START_NODES);
+
+        mSolvers = new BitSolver[strategies.length];
+        mPuzzles = new byte[strategies.length][mSize];
+        mSolutions = new byte[strategies.length][mSize];
+        mCounts = new int[strategies.length];
+        for (int i = 0; i < strategies.length; i++) {
+            mSolvers[i] = BitSolver.forWidth(width);
+            if (strategies[i] == Strategy.RESTARTS) {
+                mSolvers[i].setRandom(new Random());
+            }
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * Sets the token polled during the head start and while waiting for the race. Once it is
+     * cancelled the race is stopped and {@link java.util.concurrent.CancellationException} thrown.
+     */
+    public void setCancellationToken(CancellationToken token) {
+        mToken = token;
+    }
+
+    /**
+     * @return strategy that settled the last puzzle, null if the head start did
+     */
+    public Strategy getWinner() {
+        return mWinner;
+    }
+
+    /**
+     * Searches for up to {@code limit} solutions of the given puzzle.
+     *
+     * @param solution receives the first solution found, may be null
+     * @return number of solutions found, at most {@code limit}
+     * @see BitSolver#solve(byte[], byte[], int)
+     */
+    public int solve(byte[] cells, byte[] solution, int limit) {
+        if (cells.length != mSize) {
+            throw new InvalidParameterException("Invalid puzzle size");
+        }
+
+        mWinner = null;
+        mHeadStart.setCancellationToken(mToken);
+        int count = mHeadStart.solve(cells, solution, limit);
+        if (!mHeadStart.isNodeLimitReached()) {
+            return count;
+        }
+
+        Metrics.increment(RACES);
+        int winner = race(cells, limit);
+        mWinner = mStrategies[winner];
+        Metrics.increment(WINS[mWinner.ordinal()]);
+
+        count = mCounts[winner];
+        if (count > 0 && solution != null) {
+            transform(mWinner, mSolutions[winner], solution);
+        }
+        return count;
+    }
+
+    /**
+     * @see BitSolver#checkUniqueness(byte[], byte[])
+     */
+    public Uniqueness checkUniqueness(byte[] cells, byte[] solution) {
+        return Uniqueness.of(solve(cells, solution, 2));
+    }
+
+    /**
+     * Runs every strategy on the executor until the first one finishes.
+     *
+     * @return index of the winning strategy
+     */
+    private int race(byte[] cells, int limit) {
+        CancellationToken race = new CancellationToken();
+        CompletionService<Integer> completion = new ExecutorCompletionService<>(mExecutor);
+
+        int running = 0;
+        int winner = -1;
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        try {
+            for (int i = 0; i < mStrategies.length; i++) {
+                int index = i;
+                completion.submit(() -> {
+                    mCounts[index] = search(index, cells, limit, race);
+                    return index;
+                });
+                running++;
+            }
+
+            while (winner < 0 && failure == null) {
+                Future<Integer> done;
+                try {
+                    done = completion.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    failure = new CancellationException("Interrupted");
+                    break;
+                }
+
+                if (done == null) {
+                    if (mToken != null && mToken.isCancelled()) {
+                        failure = new CancellationException(mToken.isTimedOut() ? "Timed out" : "Cancelled");
+                    }
+                    continue;
+                }
+
+                running--;
+                try {
+                    winner = done.get();
+                } catch (ExecutionException e) {
+                    failure = (e.getCause() instanceof RuntimeException)
+                            ? (RuntimeException) e.getCause()
+                            : new IllegalStateException(e.getCause());
+                } catch (InterruptedException e) {
+                    // Unreachable, the future is done
+                    interrupted = true;
+                }
+            }
+        } finally {
+            // The losers stop within a few hundred branches, and their solvers are reused next
+            race.cancel();
+            while (running > 0) {
+                try {
+                    completion.take();
+                    running--;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        return winner;
+    }
+
+    /**
+     * Runs one strategy on the puzzle, leaving its first solution in its own orientation.
+     *
+     * @return number of solutions found, at most {@code limit}
+     */
+    private int search(int index, byte[] cells, int limit, CancellationToken race) {
+        Strategy strategy = mStrategies[index];
+        BitSolver solver = mSolvers[index];
+        byte[] puzzle = mPuzzles[index];
+
+        transform(strategy, cells, puzzle);
+        solver.setCancellationToken(race);
+        if (strategy != Strategy.RESTARTS) {
+            return solver.solve(puzzle, mSolutions[index], limit);
+        }
+
+        for (long budget = FIRST_RESTART_NODES; ; budget *= 2) {
+            solver.setNodeLimit(budget);
+            int count = solver.solve(puzzle, mSolutions[index], limit);
+            if (!solver.isNodeLimitReached()) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Maps cells between the plain orientation and that of a strategy, both ways.
+     */
+    private void transform(Strategy strategy, byte[] from, byte[] to) {
+        switch (strategy) {
+            case ROTATED:
+                for (int c = 0; c < mSize; c++) {
+                    byte value = from[mSize - 1 - c];
+                    to[c] = (value == 0) ? 0 : (byte) (mWidth + 1 - value);
+                }
+                break;
+            case TRANSPOSED:
+                for (int c = 0; c < mSize; c++) {
+                    to[c] = from[(c % mWidth) * mWidth + c / mWidth];
+                }
+                break;
+            default:
+                System.arraycopy(from, 0, to, 0, mSize);
+                break;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package github.me_asri.ansu.core;
+
+/**
+ * Puzzle givens together with their cached {@link Grade}.
+ */
+public class Puzzle {
+    private final byte[] mCells;
+    private volatile Grade mGrade;
+
+    public Puzzle(byte[] cells) {
+        this(cells, null);
+    }
+
+    public Puzzle(byte[] cells, Grade grade) {
+        mCells = cells;
+        mGrade = grade;
+    }
+
+    /**
+     * @return row-major givens, 0 for empty cells
+     */
+    public byte[] getCells() {
+        return mCells;
+    }
+
+    public int getWidth() {
+        return (int) Math.round(Math.sqrt(mCells.length));
+    }
+
+    /**
+     * @return the grade or null if it was not computed yet
+     */
+    public Grade getGrade() {
+        return mGrade;
+    }
+
+    public void setGrade(Grade grade) {
+        mGrade = grade;
+    }
+}
@@ -0,0 +1,22 @@
+package github.me_asri.ansu.core;
+
+import java.security.InvalidParameterException;
+
+/**
+ * Thrown when a puzzle file is malformed, carrying the offending line number.
+ */
+public class PuzzleFormatException extends InvalidParameterException {
+    static private final long serialVersionUID = 1L;
+
+    private final long mLineNumber;
+
+    public PuzzleFormatException(String message, long lineNumber) {
+        super("Line " + lineNumber + ": " + message);
+
+        mLineNumber = lineNumber;
+    }
+
+    public long getLineNumber() {
+        return mLineNumber;
+    }
+}
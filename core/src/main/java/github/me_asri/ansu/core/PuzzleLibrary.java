@@ -0,0 +1,228 @@
+package github.me_asri.ansu.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+/**
+ * Read-only puzzle library file accessed through a memory mapping.
+ * <p>
+ * The file starts with a fixed header, followed by fixed-size records and an index holding the
+ * absolute offset of every record. A record is a {@link BoardCodec} encoding of the solution with
+ * the givens locked, or of the givens alone if the puzzle has no known solution, followed by the
+ * grade score and flags. Opening a library only checks the header, and any puzzle is fetched by
+ * index straight from the mapping, so libraries of millions of puzzles open instantly.
+ * <p>
+ * Libraries are created with {@link PuzzleLibraryWriter}. Reading is thread safe.
+ */
+public class PuzzleLibrary implements Closeable {
+    static final int MAGIC = 0x414E534C;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    // Header layout, big-endian
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_WIDTH = 6;
+    static final int HEADER_RECORD_SIZE = 8;
+    static final int HEADER_COUNT = 12;
+    static final int HEADER_INDEX_OFFSET = 16;
+
+    static final int INDEX_ENTRY_SIZE = 8;
+
+    /**
+     * The record carries a grade score.
+     */
+    static public final int FLAG_GRADED = 1;
+    /**
+     * The record carries a solution.
+     */
+    static public final int FLAG_SOLVED = 2;
+    /**
+     * The puzzle has more than one solution, the stored one is the first found.
+     */
+    static public final int FLAG_MULTIPLE = 4;
+
+    private final FileChannel mChannel;
+    private final MappedByteBuffer mData;
+
+    private final int mWidth;
+    private final int mSize;
+    private final int mRecordSize;
+    private final int mCount;
+    private final int mIndexOffset;
+
+    private PuzzleLibrary(FileChannel channel) throws IOException {
+        long length = channel.size();
+        if (length < HEADER_SIZE) {
+            throw new InvalidParameterException("Not a puzzle library");
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new InvalidParameterException("Puzzle library too large to map");
+        }
+
+        mChannel = channel;
+        mData = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+        if (mData.getInt(HEADER_MAGIC) != MAGIC) {
+            throw new InvalidParameterException("Not a puzzle library");
+        }
+        if (mData.getShort(HEADER_VERSION) != VERSION) {
+            throw new InvalidParameterException("Unsupported puzzle library version");
+        }
+
+        mWidth = mData.get(HEADER_WIDTH) & 0xFF;
+        mSize = mWidth * mWidth;
+        mRecordSize = mData.getInt(HEADER_RECORD_SIZE);
+        mCount = mData.getInt(HEADER_COUNT);
+        long indexOffset = mData.getLong(HEADER_INDEX_OFFSET);
+
+        if (mWidth == 0 || mRecordSize != recordSize(mWidth) || mCount < 0 || indexOffset < HEADER_SIZE
+                || indexOffset + (long) mCount * INDEX_ENTRY_SIZE > length) {
+            throw new InvalidParameterException("Corrupt puzzle library header");
+        }
+        mIndexOffset = (int) indexOffset;
+    }
+
+    /**
+     * Maps a library file. Only the header is read.
+     */
+    static public PuzzleLibrary open(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            return new PuzzleLibrary(input.getChannel());
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps a library from an open channel, which is closed along with the library.
+     */
+    static public PuzzleLibrary open(FileChannel channel) throws IOException {
+        return new PuzzleLibrary(channel);
+    }
+
+    /**
+     * @return true if the channel holds a puzzle library, the channel position is left untouched
+     */
+    static public boolean isLibrary(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        while (magic.hasRemaining()) {
+            if (channel.read(magic, magic.position()) < 0) {
+                return false;
+            }
+        }
+
+        return magic.getInt(0) == MAGIC;
+    }
+
+    static int recordSize(int width) {
+        // Board, grade score and flags
+        return BoardCodec.encodedLength(width) + 4 + 1;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return number of puzzles in the library
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Reads a puzzle into the given arrays, allocating nothing unless the solution is skipped.
+     *
+     * @param givens   receives the givens
+     * @param solution receives the solution or zeroes if none is stored, may be null
+     * @return the flags of the record
+     */
+    public int read(int index, byte[] givens, byte[] solution) {
+        int record = recordOffset(index);
+        int flags = mData.get(record + mRecordSize - 1);
+
+        if (solution == null && (flags & FLAG_SOLVED) != 0) {
+            solution = new byte[mSize];
+        }
+        if ((flags & FLAG_SOLVED) != 0) {
+            BoardCodec.decode(mData, record, solution, givens);
+        } else {
+            BoardCodec.decode(mData, record, givens, null);
+            if (solution != null) {
+                Arrays.fill(solution, (byte) 0);
+            }
+        }
+
+        return flags;
+    }
+
+    public int getFlags(int index) {
+        return mData.get(recordOffset(index) + mRecordSize - 1);
+    }
+
+    /**
+     * @return the grade or null if the puzzle was not graded
+     */
+    public Grade getGrade(int index) {
+        int record = recordOffset(index);
+        if ((mData.get(record + mRecordSize - 1) & FLAG_GRADED) == 0) {
+            return null;
+        }
+
+        return Grade.fromScore(mData.getInt(record + mRecordSize - 5));
+    }
+
+    /**
+     * @return the givens and grade of a puzzle as a new {@link Puzzle}
+     */
+    public Puzzle get(int index) {
+        byte[] givens = new byte[mSize];
+        read(index, givens, null);
+
+        return new Puzzle(givens, getGrade(index));
+    }
+
+    /**
+     * @return the solution as a new array or null if none is stored
+     */
+    public byte[] getSolution(int index) {
+        if ((getFlags(index) & FLAG_SOLVED) == 0) {
+            return null;
+        }
+
+        byte[] solution = new byte[mSize];
+        BoardCodec.decode(mData, recordOffset(index), solution, null);
+        return solution;
+    }
+
+    /**
+     * Closes the channel. The mapping itself is released once it is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+
+    private int recordOffset(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("Puzzle " + index + " of " + mCount);
+        }
+
+        long offset = mData.getLong(mIndexOffset + index * INDEX_ENTRY_SIZE);
+        if (offset < HEADER_SIZE || offset + mRecordSize > mIndexOffset) {
+            throw new InvalidParameterException("Corrupt puzzle library index");
+        }
+
+        return (int) offset;
+    }
+}
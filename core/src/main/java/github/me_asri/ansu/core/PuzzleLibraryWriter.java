@@ -0,0 +1,152 @@
+package github.me_asri.ansu.core;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+/**
+ * Writes a {@link PuzzleLibrary} file.
+ * <p>
+ * Records are streamed to the file as they are added, only their offsets and scores are kept
+ * in memory until {@link #close()} writes the index and the header. The index lists the records
+ * in insertion order or, if requested, from the easiest to the hardest grade without moving the
+ * records themselves.
+ */
+public class PuzzleLibraryWriter implements Closeable {
+    private final RandomAccessFile mFile;
+    private final DataOutputStream mOutput;
+
+    private final int mWidth;
+    private final int mSize;
+    private final int mRecordSize;
+
+    private long[] mOffsets = new long[1024];
+    // Grade scores in the order of mOffsets, ungraded and unsolvable puzzles sort last
+    private int[] mScores = new int[1024];
+    private int mCount = 0;
+    private long mPosition = PuzzleLibrary.HEADER_SIZE;
+
+    private boolean mSortByGrade = false;
+
+    public PuzzleLibraryWriter(File file, int width) throws IOException {
+        Grids.blockWidth(width);
+
+        mWidth = width;
+        mSize = width * width;
+        mRecordSize = PuzzleLibrary.recordSize(width);
+
+        mFile = new RandomAccessFile(file, "rw");
+        mFile.setLength(0);
+        mFile.seek(PuzzleLibrary.HEADER_SIZE);
+        mOutput = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(mFile.getChannel())));
+    }
+
+    /**
+     * Makes the index list the puzzles from the easiest to the hardest grade.
+     */
+    public void setSortByGrade(boolean sort) {
+        mSortByGrade = sort;
+    }
+
+    /**
+     * @return number of puzzles added so far
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Appends a puzzle, storing its grade if it has one.
+     *
+     * @param solution solution of the puzzle or null if it is not known
+     * @param multiple whether the puzzle has more than one solution
+     */
+    public void add(Puzzle puzzle, byte[] solution, boolean multiple) throws IOException {
+        byte[] givens = puzzle.getCells();
+        if (givens.length != mSize || (solution != null && solution.length != mSize)) {
+            throw new InvalidParameterException("Invalid puzzle size");
+        }
+        if (mCount == Integer.MAX_VALUE) {
+            throw new InvalidParameterException("Puzzle library full");
+        }
+
+        int flags = 0;
+        Grade grade = puzzle.getGrade();
+        if (grade != null) {
+            flags |= PuzzleLibrary.FLAG_GRADED;
+        }
+        if (solution != null) {
+            flags |= PuzzleLibrary.FLAG_SOLVED;
+            if (multiple) {
+                flags |= PuzzleLibrary.FLAG_MULTIPLE;
+            }
+        }
+
+        mOutput.write(BoardCodec.encode((solution != null) ? solution : givens, givens));
+        mOutput.writeInt((grade != null) ? grade.getScore() : 0);
+        mOutput.writeByte(flags);
+
+        if (mCount == mOffsets.length) {
+            mOffsets = Arrays.copyOf(mOffsets, mCount * 2);
+            mScores = Arrays.copyOf(mScores, mCount * 2);
+        }
+        mOffsets[mCount] = mPosition;
+        mScores[mCount] = (grade != null && grade.isSolvable()) ? grade.getScore() : Integer.MAX_VALUE;
+        mCount++;
+        mPosition += mRecordSize;
+    }
+
+    /**
+     * Writes the index and the header and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long[] index = mSortByGrade ? sortedOffsets() : mOffsets;
+            for (int i = 0; i < mCount; i++) {
+                mOutput.writeLong(index[i]);
+            }
+            mOutput.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(PuzzleLibrary.HEADER_SIZE);
+            header.putInt(PuzzleLibrary.HEADER_MAGIC, PuzzleLibrary.MAGIC);
+            header.putShort(PuzzleLibrary.HEADER_VERSION, (short) PuzzleLibrary.VERSION);
+            header.put(PuzzleLibrary.HEADER_WIDTH, (byte) mWidth);
+            header.putInt(PuzzleLibrary.HEADER_RECORD_SIZE, mRecordSize);
+            header.putInt(PuzzleLibrary.HEADER_COUNT, mCount);
+            header.putLong(PuzzleLibrary.HEADER_INDEX_OFFSET, mPosition);
+
+            // Written last, so a library cut short is never mistaken for a complete one
+            FileChannel channel = mFile.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        } finally {
+            mOutput.close();
+        }
+    }
+
+    private long[] sortedOffsets() {
+        Integer[] order = new Integer[mCount];
+        for (int i = 0; i < mCount; i++) {
+            order[i] = i;
+        }
+        // Stable, so equal grades keep their insertion order
+        Arrays.sort(order, (a, b) -> Integer.compare(mScores[a], mScores[b]));
+
+        long[] offsets = new long[mCount];
+        for (int i = 0; i < mCount; i++) {
+            offsets[i] = mOffsets[order[i]];
+        }
+        return offsets;
+    }
+}
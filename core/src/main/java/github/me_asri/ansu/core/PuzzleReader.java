@@ -0,0 +1,337 @@
+package github.me_asri.ansu.core;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader for puzzle collections.
+ * <p>
+ * Accepts the multi-line {@code sdk} format (one row per line) as well as one puzzle per line,
+ * both optionally gzip-compressed. Empty cells are written as {@code .} or {@code 0}, lines
+ * starting with {@code #} and blank lines are skipped. Parsing works on a fixed size byte buffer,
+ * so memory use does not depend on the size of the collection.
+ * <p>
+ * Cells are either written as one character each, digits followed by letters for values above 9
+ * ({@code a} = 10 up to {@code p} = 25, in either case), and anything following whitespace on a
+ * line is ignored. Or they are written as decimal numbers separated by whitespace or commas,
+ * which is recognized by the first number not making up a whole row or puzzle.
+ * <p>
+ * If no width is given, it is detected from the first puzzle, which has to be 9x9, 16x16 or 25x25.
+ */
+public class PuzzleReader implements Iterator<byte[]>, Closeable {
+    static private final int BUFFER_SIZE = 64 * 1024;
+
+    static public final int MAX_WIDTH = 25;
+    static private final int[] DETECTED_WIDTHS = {9, 16, 25};
+
+    private final InputStream mInput;
+    private int mWidth;
+    private int mSize;
+
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+    private int mBufferPos = 0;
+    private int mBufferLen = 0;
+
+    // Cells of the current line, followed by the rows of a multi-line puzzle in progress
+    private final byte[] mLine;
+    private final byte[] mRows;
+    private int mRowCount = 0;
+    private long mRowsStartLine = 0;
+
+    private long mLineNumber = 0;
+    private long mPuzzleCount = 0;
+
+    private byte[] mNext = null;
+
+    /**
+     * Creates a reader detecting the width from the first puzzle.
+     */
+    public PuzzleReader(InputStream input) throws IOException {
+        this(input, 0);
+    }
+
+    /**
+     * @param width width of the puzzles, a square number, or 0 to detect it from the first puzzle
+     * @throws InvalidParameterException if the width is not supported
+     */
+    public PuzzleReader(InputStream input, int width) throws IOException {
+        if (width < 0 || width > MAX_WIDTH) {
+            throw new InvalidParameterException("Unsupported width");
+        }
+        if (width != 0) {
+            Grids.blockWidth(width);
+        }
+
+        BufferedInputStream buffered = new BufferedInputStream(input);
+
+        buffered.mark(2);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+
+        mInput = (magic == GZIPInputStream.GZIP_MAGIC) ? new GZIPInputStream(buffered, BUFFER_SIZE) : buffered;
+        mWidth = width;
+        mSize = width * width;
+
+        int capacity = (width != 0) ? mSize : MAX_WIDTH * MAX_WIDTH;
+        mLine = new byte[capacity];
+        mRows = new byte[capacity];
+    }
+
+    /**
+     * Reads the next puzzle into the given array, which needs to hold at least
+     * {@link #getWidth()} squared cells or 625 cells while the width is not known yet.
+     *
+     * @return false if the end of the input was reached
+     * @throws PuzzleFormatException if the input is malformed
+     */
+    public boolean read(byte[] cells) throws IOException {
+        while (true) {
+            int count = readLine();
+            if (count < 0) {
+                if (mRowCount != 0) {
+                    throw new PuzzleFormatException("Incomplete puzzle", mRowsStartLine);
+                }
+                return false;
+            }
+            if (count == 0) {
+                continue;
+            }
+            if (mWidth == 0) {
+                detectWidth(count);
+            }
+
+            if (count == mSize && mRowCount == 0) {
+                System.arraycopy(mLine, 0, cells, 0, mSize);
+                mPuzzleCount++;
+                return true;
+            }
+            if (count != mWidth) {
+                throw new PuzzleFormatException("Expected " + mWidth + " or " + mSize
+                        + " cells but found " + count, mLineNumber);
+            }
+
+            if (mRowCount == 0) {
+                mRowsStartLine = mLineNumber;
+            }
+            System.arraycopy(mLine, 0, mRows, mRowCount * mWidth, mWidth);
+            mRowCount++;
+
+            if (mRowCount == mWidth) {
+                System.arraycopy(mRows, 0, cells, 0, mSize);
+                mRowCount = 0;
+                mPuzzleCount++;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return width of the puzzles, 0 if it is to be detected and no puzzle was read yet
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public long getLineNumber() {
+        return mLineNumber;
+    }
+
+    public long getPuzzleCount() {
+        return mPuzzleCount;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (mNext != null) {
+            return true;
+        }
+
+        byte[] cells = new byte[(mWidth != 0) ? mSize : mLine.length];
+        try {
+            if (!read(cells)) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        mNext = (cells.length == mSize) ? cells : Arrays.copyOf(cells, mSize);
+        return true;
+    }
+
+    @Override
+    public byte[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        byte[] cells = mNext;
+        mNext = null;
+        return cells;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInput.close();
+    }
+
+    /**
+     * Parses the next line into {@link #mLine}.
+     *
+     * @return number of cells on the line, 0 for blank and comment lines or -1 at end of input
+     */
+    private int readLine() throws IOException {
+        int b = readByte();
+        if (b < 0) {
+            return -1;
+        }
+        mLineNumber++;
+
+        int count = 0;
+        boolean skip = (b == '#');
+        // Set once the line turned out to hold separated numbers, value is -1 between numbers
+        boolean numbers = false;
+        int value = -1;
+        // Decimal value of the cells read so far, in case they turn out to be the first number
+        int firstNumber = 0;
+
+        while (b >= 0 && b != '\n') {
+            boolean separator = (b == ' ' || b == '\t' || b == '\r' || b == ',');
+            if (skip) {
+                b = readByte();
+                continue;
+            }
+
+            if (numbers) {
+                if (!separator) {
+                    value = Math.max(value, 0) * 10 + parseDecimal(b);
+                } else if (value >= 0) {
+                    count = addNumber(count, value);
+                    value = -1;
+                }
+            } else if (separator) {
+                if (count == 0) {
+                    // Leading whitespace is allowed
+                } else if (isLineLength(count) || firstNumber > maxValue()) {
+                    // Everything after the cells is ignored
+                    skip = true;
+                } else {
+                    numbers = true;
+                    count = addNumber(0, firstNumber);
+                }
+            } else {
+                if (count == mLine.length) {
+                    throw new PuzzleFormatException("Too many cells", mLineNumber);
+                }
+                mLine[count++] = parseCell(b);
+                firstNumber = (firstNumber > MAX_WIDTH) ? firstNumber : firstNumber * 10 + decimalOrMax(b);
+            }
+
+            b = readByte();
+        }
+        if (numbers && value >= 0) {
+            count = addNumber(count, value);
+        }
+
+        return count;
+    }
+
+    private boolean isLineLength(int count) {
+        if (mWidth != 0) {
+            return count == mWidth || count == mSize;
+        }
+
+        for (int width : DETECTED_WIDTHS) {
+            if (count == width || count == width * width) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void detectWidth(int count) {
+        for (int width : DETECTED_WIDTHS) {
+            if (count == width || count == width * width) {
+                mWidth = width;
+                mSize = width * width;
+                break;
+            }
+        }
+        if (mWidth == 0) {
+            throw new PuzzleFormatException("Unsupported puzzle with " + count + " cells", mLineNumber);
+        }
+
+        // The line was parsed without knowing the largest digit
+        for (int k = 0; k < count; k++) {
+            if (mLine[k] > mWidth) {
+                throw new PuzzleFormatException("Invalid value " + mLine[k], mLineNumber);
+            }
+        }
+    }
+
+    private int addNumber(int count, int value) {
+        if (value > maxValue()) {
+            throw new PuzzleFormatException("Invalid value " + value, mLineNumber);
+        }
+        if (count == mLine.length) {
+            throw new PuzzleFormatException("Too many cells", mLineNumber);
+        }
+
+        mLine[count] = (byte) value;
+        return count + 1;
+    }
+
+    private int maxValue() {
+        return (mWidth != 0) ? mWidth : MAX_WIDTH;
+    }
+
+    private byte parseCell(int c) {
+        if (c == '.') {
+            return 0;
+        }
+
+        int value = Character.digit(c, maxValue() + 1);
+        if (value < 0) {
+            throw new PuzzleFormatException("Invalid character '" + (char) c + "'", mLineNumber);
+        }
+        return (byte) value;
+    }
+
+    private int parseDecimal(int c) {
+        if (c == '.') {
+            return 0;
+        }
+        if (c < '0' || c > '9') {
+            throw new PuzzleFormatException("Invalid character '" + (char) c + "'", mLineNumber);
+        }
+        return c - '0';
+    }
+
+    static private int decimalOrMax(int c) {
+        if (c == '.') {
+            return 0;
+        }
+        return (c >= '0' && c <= '9') ? c - '0' : MAX_WIDTH + 1;
+    }
+
+    private int readByte() throws IOException {
+        if (mBufferPos == mBufferLen) {
+            mBufferLen = mInput.read(mBuffer, 0, BUFFER_SIZE);
+            mBufferPos = 0;
+            if (mBufferLen <= 0) {
+                mBufferLen = 0;
+                return -1;
+            }
+        }
+
+        return mBuffer[mBufferPos++] & 0xFF;
+    }
+}
@@ -0,0 +1,218 @@
+package github.me_asri.ansu.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded pool of pre-generated riddles kept topped up by a low priority worker thread.
+ * <p>
+ * The pool content is persisted to a file as one riddle per line, followed by the grade score
+ * if known, so it survives process restarts. The file is rewritten after every riddle taken or
+ * added, so a riddle once handed out is not served again after a restart.
+ */
+public class RiddlePool {
+    static private final Logger LOGGER = Logger.getLogger(RiddlePool.class.getName());
+
+    private final int mWidth;
+    private final Supplier<Puzzle> mGenerator;
+    private final File mFile;
+
+    private final BlockingQueue<Puzzle> mQueue;
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    private Thread mWorker = null;
+    // Persists the pool after riddles are taken, off the calling thread
+    private final ExecutorService mSaver = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RiddlePool.save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Serializes writes of the pool file
+    private final Object mSaveLock = new Object();
+
+    /**
+     * @param generator creates a new riddle, called on the worker thread only
+     * @param file      file the pool is persisted to or null to keep it in memory
+     */
+    public RiddlePool(int width, int capacity, Supplier<Puzzle> generator, File file) {
+        mWidth = width;
+        mGenerator = generator;
+        mFile = file;
+
+        mQueue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Starts the worker, which first restores the persisted riddles and then refills the pool.
+     */
+    public synchronized void start() {
+        if (mWorker != null) {
+            return;
+        }
+
+        mWorker = new Thread(this::runWorker, "RiddlePool");
+        mWorker.setPriority(Thread.MIN_PRIORITY);
+        mWorker.setDaemon(true);
+        mWorker.start();
+    }
+
+    public synchronized void stop() {
+        if (mWorker == null) {
+            return;
+        }
+
+        mWorker.interrupt();
+        mWorker = null;
+    }
+
+    /**
+     * Takes a riddle out of the pool without blocking.
+     *
+     * @return the riddle or null if the pool is empty
+     */
+    public Puzzle poll() {
+        Puzzle riddle = mQueue.poll();
+        if (riddle == null) {
+            mMisses.incrementAndGet();
+        } else {
+            mHits.incrementAndGet();
+            if (mFile != null) {
+                mSaver.execute(this::save);
+            }
+        }
+
+        return riddle;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int size() {
+        return mQueue.size();
+    }
+
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    private void runWorker() {
+        load();
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Puzzle riddle = mGenerator.get();
+                // Blocks while the pool is full
+                mQueue.put(riddle);
+
+                save();
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void load() {
+        if (mFile == null || !mFile.exists()) {
+            return;
+        }
+
+        int size = mWidth * mWidth;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(mFile), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() < size) {
+                    continue;
+                }
+
+                byte[] cells = parseCells(line, size);
+                if (cells == null) {
+                    LOGGER.warning("Skipping corrupt riddle pool line");
+                    continue;
+                }
+
+                Grade grade = null;
+                if (line.length() > size + 1) {
+                    grade = Grade.fromScore(Integer.parseInt(line.substring(size + 1)));
+                }
+                if (!mQueue.offer(new Puzzle(cells, grade))) {
+                    break;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Failed to load riddle pool", e);
+        }
+    }
+
+    /**
+     * @return the cells at the start of the line or null if any of them is invalid
+     */
+    private byte[] parseCells(String line, int size) {
+        byte[] cells = new byte[size];
+        for (int i = 0; i < size; i++) {
+            char c = line.charAt(i);
+            int value = (c == '.') ? 0 : Character.digit(c, mWidth + 1);
+            if (value < 0) {
+                return null;
+            }
+            cells[i] = (byte) value;
+        }
+
+        return cells;
+    }
+
+    // Called on both the worker and the saver thread
+    private void save() {
+        if (mFile == null) {
+            return;
+        }
+
+        synchronized (mSaveLock) {
+            writeFile();
+        }
+    }
+
+    private void writeFile() {
+        File temp = new File(mFile.getPath() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(temp), StandardCharsets.US_ASCII))) {
+            for (Object item : mQueue.toArray()) {
+                Puzzle riddle = (Puzzle) item;
+                Grids.writeCells(writer, riddle.getCells(), mWidth);
+                if (riddle.getGrade() != null) {
+                    writer.write(' ');
+                    writer.write(Integer.toString(riddle.getGrade().getScore()));
+                }
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save riddle pool", e);
+            return;
+        }
+
+        if (!temp.renameTo(mFile)) {
+            LOGGER.warning("Failed to replace riddle pool file");
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package github.me_asri.ansu.core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+
+/**
+ * Reads and writes single puzzles in the {@code sdk} format used by SudoCue and SandMan.
+ * <p>
+ * Reading accepts anything {@link PuzzleReader} does and takes the first puzzle.
+ */
+public class SdkFormat {
+    private SdkFormat() {
+    }
+
+    /**
+     * Reads the first puzzle, detecting whether it is 9x9, 16x16 or 25x25.
+     */
+    static public Board read(InputStream input) throws IOException {
+        PuzzleReader reader = new PuzzleReader(input);
+
+        byte[] cells = new byte[PuzzleReader.MAX_WIDTH * PuzzleReader.MAX_WIDTH];
+        if (!reader.read(cells)) {
+            throw new InvalidParameterException("Invalid file");
+        }
+
+        int width = reader.getWidth();
+        return Board.wrap(Arrays.copyOf(cells, width * width));
+    }
+
+    static public Board read(int width, InputStream input) throws IOException {
+        PuzzleReader reader = new PuzzleReader(input, width);
+
+        byte[] cells = new byte[width * width];
+        if (!reader.read(cells)) {
+            throw new InvalidParameterException("Invalid file");
+        }
+
+        return Board.wrap(cells);
+    }
+
+    /**
+     * Writes one row per line, values above 9 as letters starting with {@code A} for 10.
+     */
+    static public void write(Board board, OutputStream output) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output));
+        int width = board.getWidth();
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < width; j++) {
+                writer.write(Grids.toChar(board.get(i, j), width));
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+}
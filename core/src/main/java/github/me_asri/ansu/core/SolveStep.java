@@ -0,0 +1,61 @@
+package github.me_asri.ansu.core;
+
+/**
+ * A single step of a {@link SolveTrace}: either a placement or a set of candidate eliminations.
+ */
+public class SolveStep {
+    private final Technique mTechnique;
+    private final int mCell;
+    private final byte mDigit;
+    private final int[] mEliminations;
+
+    private SolveStep(Technique technique, int cell, byte digit, int[] eliminations) {
+        mTechnique = technique;
+        mCell = cell;
+        mDigit = digit;
+        mEliminations = eliminations;
+    }
+
+    static SolveStep placement(Technique technique, int cell, byte digit) {
+        return new SolveStep(technique, cell, digit, null);
+    }
+
+    static SolveStep elimination(Technique technique, int[] eliminations) {
+        return new SolveStep(technique, -1, (byte) 0, eliminations);
+    }
+
+    public Technique getTechnique() {
+        return mTechnique;
+    }
+
+    public boolean isPlacement() {
+        return mEliminations == null;
+    }
+
+    /**
+     * @return placed cell, row-major
+     */
+    public int getCell() {
+        return mCell;
+    }
+
+    public byte getDigit() {
+        return mDigit;
+    }
+
+    public int getEliminationCount() {
+        return (mEliminations == null) ? 0 : mEliminations.length;
+    }
+
+    public int getEliminatedCell(int index) {
+        return mEliminations[index] >>> 5;
+    }
+
+    public byte getEliminatedDigit(int index) {
+        return (byte) ((mEliminations[index] & 0x1F) + 1);
+    }
+
+    static int packElimination(int cell, int digit) {
+        return (cell << 5) | (digit - 1);
+    }
+}
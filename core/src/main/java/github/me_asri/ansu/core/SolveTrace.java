@@ -0,0 +1,50 @@
+package github.me_asri.ansu.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered steps taken by {@link LogicSolver} on a puzzle.
+ */
+public class SolveTrace {
+    private final List<SolveStep> mSteps;
+    private final byte[] mSolution;
+    private final Technique mHardest;
+    private final long mSearchNodes;
+
+    SolveTrace(List<SolveStep> steps, byte[] solution, Technique hardest, long searchNodes) {
+        mSteps = Collections.unmodifiableList(steps);
+        mSolution = solution;
+        mHardest = hardest;
+        mSearchNodes = searchNodes;
+    }
+
+    public List<SolveStep> getSteps() {
+        return mSteps;
+    }
+
+    public boolean isSolved() {
+        return mSolution != null;
+    }
+
+    /**
+     * @return the solved grid or null if the puzzle has no solution
+     */
+    public byte[] getSolution() {
+        return mSolution;
+    }
+
+    /**
+     * @return hardest technique needed or null if no step was taken
+     */
+    public Technique getHardestTechnique() {
+        return mHardest;
+    }
+
+    /**
+     * @return branches explored by the fallback search, 0 if logic alone solved the puzzle
+     */
+    public long getSearchNodes() {
+        return mSearchNodes;
+    }
+}
@@ -0,0 +1,88 @@
+package github.me_asri.ansu.core;
+
+import java.util.Arrays;
+
+/**
+ * Symmetry of the clue layout of a riddle. Givens are only removed together with their images,
+ * so the empty cells of the riddle form the same pattern when transformed.
+ */
+public enum Symmetry {
+    NONE {
+        @Override
+        int map(int row, int col, int width) {
+            return row * width + col;
+        }
+    },
+    /**
+     * Half turn around the center, the usual symmetry of published riddles.
+     */
+    ROTATIONAL {
+        @Override
+        int map(int row, int col, int width) {
+            return (width - 1 - row) * width + (width - 1 - col);
+        }
+    },
+    /**
+     * Quarter turn around the center.
+     */
+    QUARTER_TURN {
+        @Override
+        int map(int row, int col, int width) {
+            return col * width + (width - 1 - row);
+        }
+    },
+    /**
+     * Mirrored at the vertical center line.
+     */
+    MIRROR {
+        @Override
+        int map(int row, int col, int width) {
+            return row * width + (width - 1 - col);
+        }
+    },
+    /**
+     * Mirrored at the main diagonal.
+     */
+    DIAGONAL {
+        @Override
+        int map(int row, int col, int width) {
+            return col * width + row;
+        }
+    };
+
+    /**
+     * @return the cell a cell is mapped to, repeated application returning to the start
+     */
+    abstract int map(int row, int col, int width);
+
+    /**
+     * Splits the cells of a grid into groups mapped onto each other.
+     *
+     * @return cell indices per group, every cell appearing in exactly one
+     */
+    public int[][] orbits(int width) {
+        int size = width * width;
+        boolean[] assigned = new boolean[size];
+        int[][] orbits = new int[size][];
+        int count = 0;
+
+        int[] orbit = new int[4];
+        for (int c = 0; c < size; c++) {
+            if (assigned[c]) {
+                continue;
+            }
+
+            int length = 0;
+            int cell = c;
+            do {
+                assigned[cell] = true;
+                orbit[length++] = cell;
+                cell = map(cell / width, cell % width, width);
+            } while (cell != c);
+
+            orbits[count++] = Arrays.copyOf(orbit, length);
+        }
+
+        return Arrays.copyOf(orbits, count);
+    }
+}
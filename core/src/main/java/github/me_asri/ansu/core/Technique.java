@@ -0,0 +1,19 @@
+package github.me_asri.ansu.core;
+
+/**
+ * Solving techniques used by {@link LogicSolver}, ordered from easiest to hardest.
+ */
+public enum Technique {
+    HIDDEN_SINGLE,
+    NAKED_SINGLE,
+    POINTING,
+    BOX_LINE,
+    NAKED_PAIR,
+    HIDDEN_PAIR,
+    NAKED_TRIPLE,
+    HIDDEN_TRIPLE,
+    X_WING,
+    SWORDFISH,
+    // Digit taken from a search solution because no technique applied
+    SEARCH,
+}
@@ -0,0 +1,20 @@
+package github.me_asri.ansu.core;
+
+/**
+ * Number of solutions of a puzzle, told apart only as far as none, one or more.
+ */
+public enum Uniqueness {
+    NONE,
+    UNIQUE,
+    MULTIPLE;
+
+    /**
+     * @param count number of solutions found when stopping at the second one
+     */
+    static public Uniqueness of(int count) {
+        if (count == 0) {
+            return NONE;
+        }
+        return (count == 1) ? UNIQUE : MULTIPLE;
+    }
+}
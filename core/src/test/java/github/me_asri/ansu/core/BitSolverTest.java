@@ -0,0 +1,114 @@
+package github.me_asri.ansu.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BitSolverTest {
+    /**
+     * @return well-known hard puzzles with a unique solution, bundled as {@code hard.txt}
+     */
+    static List<byte[]> hardSet() throws IOException {
+        List<byte[]> puzzles = new ArrayList<>();
+        try (InputStream input = BitSolverTest.class.getResourceAsStream("/hard.txt");
+             PuzzleReader reader = new PuzzleReader(input, 9)) {
+            reader.forEachRemaining(puzzles::add);
+        }
+
+        return puzzles;
+    }
+
+    @Test
+    public void solvesHardSetUniquely() throws IOException {
+        List<byte[]> puzzles = hardSet();
+        assertFalse(puzzles.isEmpty());
+
+        BitSolver solver = BitSolver.forWidth(9);
+        byte[] solution = new byte[81];
+        for (byte[] puzzle : puzzles) {
+            assertEquals(Uniqueness.UNIQUE, solver.checkUniqueness(puzzle, solution));
+            assertSolves(puzzle, solution, 3);
+        }
+    }
+
+    @Test
+    public void detectsMultipleSolutions() {
+        BitSolver solver = BitSolver.forWidth(9);
+        assertEquals(Uniqueness.MULTIPLE, solver.checkUniqueness(new byte[81], null));
+        assertEquals(5, solver.solve(new byte[81], null, 5));
+    }
+
+    @Test
+    public void detectsContradictions() {
+        byte[] cells = new byte[81];
+        cells[0] = 1;
+        cells[1] = 1;
+
+        BitSolver solver = BitSolver.forWidth(9);
+        assertEquals(Uniqueness.NONE, solver.checkUniqueness(cells, null));
+        assertNull(solver.solve(cells));
+    }
+
+    @Test
+    public void solvesLargerGrids() {
+        BitSolver solver = BitSolver.forWidth(16);
+        byte[] solution = solver.solve(new byte[256]);
+        assertNotNull(solution);
+        assertSolves(new byte[256], solution, 4);
+    }
+
+    @Test
+    public void enumeratesDistinctSolutions() {
+        BitSolver solver = BitSolver.forWidth(9);
+        Iterator<byte[]> solutions = solver.solutions(new byte[81], 3);
+
+        Set<String> seen = new HashSet<>();
+        while (solutions.hasNext()) {
+            byte[] solution = solutions.next();
+            assertSolves(new byte[81], solution, 3);
+            assertTrue(seen.add(Arrays.toString(solution)));
+        }
+        assertEquals(3, seen.size());
+    }
+
+    /**
+     * Checks that the solution is a complete valid grid keeping every given.
+     */
+    static void assertSolves(byte[] puzzle, byte[] solution, int blockWidth) {
+        int width = blockWidth * blockWidth;
+        for (int c = 0; c < puzzle.length; c++) {
+            assertTrue(puzzle[c] == 0 || puzzle[c] == solution[c]);
+        }
+
+        for (int i = 0; i < width; i++) {
+            int row = 0;
+            int column = 0;
+            int box = 0;
+            for (int j = 0; j < width; j++) {
+                int boxRow = (i / blockWidth) * blockWidth + j / blockWidth;
+                int boxColumn = (i % blockWidth) * blockWidth + j % blockWidth;
+                row |= 1 << solution[i * width + j];
+                column |= 1 << solution[j * width + i];
+                box |= 1 << solution[boxRow * width + boxColumn];
+            }
+
+            int all = ((1 << width) - 1) << 1;
+            assertEquals(all, row);
+            assertEquals(all, column);
+            assertEquals(all, box);
+        }
+    }
+}
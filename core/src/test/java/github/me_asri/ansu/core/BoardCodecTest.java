@@ -0,0 +1,65 @@
+package github.me_asri.ansu.core;
+
+import org.junit.Test;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BoardCodecTest {
+    @Test
+    public void encodedLength() {
+        assertEquals(53, BoardCodec.encodedLength(9));
+        assertEquals(53, BoardCodec.encode(new byte[81], null).length);
+    }
+
+    @Test
+    public void roundTripsEverySize() {
+        Random random = new Random(1);
+        for (int width : new int[]{4, 9, 16, 25}) {
+            int size = width * width;
+            byte[] cells = new byte[size];
+            byte[] givens = new byte[size];
+            for (int c = 0; c < size; c++) {
+                cells[c] = (byte) random.nextInt(width + 1);
+                givens[c] = random.nextBoolean() ? cells[c] : 0;
+            }
+
+            byte[] data = BoardCodec.encode(cells, givens);
+            assertEquals(width, BoardCodec.width(data));
+
+            byte[] decodedCells = new byte[size];
+            byte[] decodedGivens = new byte[size];
+            BoardCodec.decode(data, decodedCells, decodedGivens);
+            assertArrayEquals(cells, decodedCells);
+            assertArrayEquals(givens, decodedGivens);
+            assertArrayEquals(cells, BoardCodec.decode(data));
+        }
+    }
+
+    @Test
+    public void noGivensDecodeUnlocked() {
+        byte[] cells = new byte[81];
+        cells[40] = 5;
+
+        byte[] givens = new byte[81];
+        BoardCodec.decode(BoardCodec.encode(cells, null), new byte[81], givens);
+        assertArrayEquals(new byte[81], givens);
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void rejectsTruncatedData() {
+        byte[] data = BoardCodec.encode(new byte[81], null);
+        BoardCodec.decode(Arrays.copyOf(data, data.length - 1));
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void rejectsValuesAboveWidth() {
+        byte[] cells = new byte[81];
+        cells[0] = 10;
+        BoardCodec.encode(cells, null);
+    }
+}
@@ -0,0 +1,65 @@
+package github.me_asri.ansu.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CandidateGridTest {
+    static private final int ALL = (1 << 9) - 1;
+
+    private final ConflictTracker mTracker = new ConflictTracker(3);
+    private final CandidateGrid mGrid = new CandidateGrid(mTracker);
+
+    @Test
+    public void followsTheTracker() {
+        mGrid.reload();
+        assertEquals(ALL, mGrid.get(80));
+
+        mTracker.set(0, (byte) 5);
+        mGrid.update(0);
+        assertEquals(0, mGrid.get(0));
+        assertEquals(ALL & ~(1 << 4), mGrid.get(8));
+        assertEquals(ALL & ~(1 << 4), mGrid.get(20));
+        assertEquals(ALL, mGrid.get(80));
+    }
+
+    @Test
+    public void undoesEliminationsPerCell() {
+        mGrid.reload();
+        mGrid.eliminate(10, 0b11);
+        int mark = mGrid.mark();
+
+        mGrid.eliminate(10, 0b100);
+        mGrid.eliminate(40, 0b1);
+        mGrid.restore(10, 0b1);
+        assertEquals(ALL & ~0b110, mGrid.get(10));
+        assertEquals(ALL & ~0b1, mGrid.get(40));
+
+        mGrid.undoTo(mark);
+        assertEquals(ALL & ~0b11, mGrid.get(10));
+        assertEquals(ALL, mGrid.get(40));
+        assertEquals(mark, mGrid.mark());
+    }
+
+    @Test
+    public void undoKeepsTrackerChanges() {
+        mGrid.reload();
+        mGrid.eliminate(1, 0b1000);
+
+        mTracker.set(0, (byte) 1);
+        mGrid.update(0);
+        mGrid.undoTo(0);
+
+        assertEquals(ALL & ~0b1, mGrid.get(1));
+    }
+
+    @Test
+    public void reloadDropsEliminations() {
+        mGrid.reload();
+        mGrid.eliminate(5, 0b1);
+        mGrid.reload();
+
+        assertEquals(ALL, mGrid.get(5));
+        assertEquals(0, mGrid.mark());
+    }
+}
@@ -0,0 +1,118 @@
+package github.me_asri.ansu.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class CanonicalizerTest {
+    static private final int TRANSFORMS = 20;
+
+    private final Canonicalizer mCanonicalizer = new Canonicalizer();
+    private final Random mRandom = new Random(42);
+
+    @Test
+    public void invariantUnderTransforms() throws IOException {
+        for (byte[] puzzle : BitSolverTest.hardSet()) {
+            assertInvariant(puzzle);
+        }
+    }
+
+    @Test
+    public void invariantForSolvedGrids() {
+        assertInvariant(BitSolver.forWidth(9).solve(new byte[81]));
+    }
+
+    @Test
+    public void invariantForSparsePuzzles() {
+        byte[] cells = new byte[81];
+        cells[0] = 1;
+        cells[40] = 2;
+        cells[80] = 1;
+        assertInvariant(cells);
+        assertInvariant(new byte[81]);
+    }
+
+    @Test
+    public void tellsInequivalentPuzzlesApart() throws IOException {
+        List<byte[]> puzzles = BitSolverTest.hardSet();
+        byte[] first = mCanonicalizer.canonicalize(puzzles.get(0));
+        byte[] second = mCanonicalizer.canonicalize(puzzles.get(1));
+
+        assertNotEquals(Canonicalizer.fingerprint(first), Canonicalizer.fingerprint(second));
+    }
+
+    private void assertInvariant(byte[] puzzle) {
+        byte[] canonical = mCanonicalizer.canonicalize(puzzle);
+        long fingerprint = Canonicalizer.fingerprint(canonical);
+        byte[] scratch = new byte[81];
+
+        for (int i = 0; i < TRANSFORMS; i++) {
+            byte[] variant = transform(puzzle);
+            assertArrayEquals(canonical, mCanonicalizer.canonicalize(variant));
+            assertEquals(fingerprint, mCanonicalizer.fingerprint(variant, scratch));
+        }
+    }
+
+    /**
+     * @return a random equivalent variant: digits relabelled, rows and columns permuted within
+     * bands and stacks, bands and stacks permuted and possibly transposed
+     */
+    private byte[] transform(byte[] cells) {
+        int[] digits = permutation(10, 1);
+        int[] rows = linePermutation();
+        int[] columns = linePermutation();
+        boolean transpose = mRandom.nextBoolean();
+
+        byte[] variant = new byte[81];
+        for (int row = 0; row < 9; row++) {
+            for (int column = 0; column < 9; column++) {
+                int source = transpose
+                        ? columns[column] * 9 + rows[row]
+                        : rows[row] * 9 + columns[column];
+                variant[row * 9 + column] = (byte) digits[cells[source]];
+            }
+        }
+
+        return variant;
+    }
+
+    /**
+     * @return a row or column order keeping bands or stacks together
+     */
+    private int[] linePermutation() {
+        int[] blocks = permutation(3, 0);
+        int[] lines = new int[9];
+        for (int block = 0; block < 3; block++) {
+            int[] within = permutation(3, 0);
+            for (int j = 0; j < 3; j++) {
+                lines[block * 3 + j] = blocks[block] * 3 + within[j];
+            }
+        }
+
+        return lines;
+    }
+
+    /**
+     * @return identity on the first {@code fixed} values, shuffled above
+     */
+    private int[] permutation(int length, int fixed) {
+        int[] permutation = new int[length];
+        for (int i = 0; i < length; i++) {
+            permutation[i] = i;
+        }
+        for (int i = length - 1; i > fixed; i--) {
+            int j = fixed + mRandom.nextInt(i - fixed + 1);
+            int swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+        }
+
+        return permutation;
+    }
+}
@@ -0,0 +1,56 @@
+package github.me_asri.ansu.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogicSolverTest {
+    @Test
+    public void solvesHardSet() throws IOException {
+        LogicSolver solver = LogicSolver.forWidth(9);
+        for (byte[] puzzle : BitSolverTest.hardSet()) {
+            SolveTrace trace = solver.solve(puzzle);
+            assertTrue(trace.isSolved());
+            BitSolverTest.assertSolves(puzzle, trace.getSolution(), 3);
+        }
+    }
+
+    @Test
+    public void searchesWithKnownSolution() throws IOException {
+        LogicSolver solver = LogicSolver.forWidth(9);
+        for (byte[] puzzle : BitSolverTest.hardSet()) {
+            byte[] known = BitSolver.forWidth(9).solve(puzzle);
+            SolveTrace trace = solver.solve(puzzle, known);
+
+            assertTrue(trace.isSolved());
+            assertArrayEquals(known, trace.getSolution());
+        }
+    }
+
+    @Test
+    public void followsKnownSolutionOfAmbiguousPuzzles() {
+        // Swapping two digits of the first solution gives one a plain search would not find first
+        byte[] known = BitSolver.forWidth(9).solve(new byte[81]);
+        for (int c = 0; c < known.length; c++) {
+            known[c] = (byte) ((known[c] <= 2) ? 3 - known[c] : known[c]);
+        }
+
+        SolveTrace trace = LogicSolver.forWidth(9).solve(new byte[81], known);
+        assertArrayEquals(known, trace.getSolution());
+        assertEquals(Technique.SEARCH, trace.getHardestTechnique());
+    }
+
+    @Test
+    public void reportsContradictions() {
+        byte[] cells = new byte[81];
+        cells[0] = 1;
+        cells[1] = 1;
+
+        assertFalse(LogicSolver.forWidth(9).solve(cells).isSolved());
+    }
+}
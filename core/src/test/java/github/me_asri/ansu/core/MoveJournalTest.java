@@ -0,0 +1,168 @@
+package github.me_asri.ansu.core;
+
+import org.junit.Test;
+
+import java.security.InvalidParameterException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MoveJournalTest {
+    private final MoveJournal mJournal = new MoveJournal();
+    private final byte[] mCells = new byte[81];
+    private final boolean[] mGiven = new boolean[81];
+
+    private final MoveJournal.Target mTarget = (cell, value, given) -> {
+        mCells[cell] = (byte) value;
+        mGiven[cell] = given;
+    };
+
+    @Test
+    public void undoesAndRedoesSingleMoves() {
+        play(0, 5);
+        play(1, 6);
+        play(0, 7);
+
+        assertTrue(mJournal.undo(mTarget));
+        assertEquals(5, mCells[0]);
+        assertTrue(mJournal.undo(mTarget));
+        assertEquals(0, mCells[1]);
+        assertTrue(mJournal.undo(mTarget));
+        assertEquals(0, mCells[0]);
+        assertFalse(mJournal.canUndo());
+        assertFalse(mJournal.undo(mTarget));
+
+        assertTrue(mJournal.redo(mTarget));
+        assertTrue(mJournal.redo(mTarget));
+        assertTrue(mJournal.redo(mTarget));
+        assertFalse(mJournal.redo(mTarget));
+        assertEquals(7, mCells[0]);
+        assertEquals(6, mCells[1]);
+    }
+
+    @Test
+    public void undoesGroupsAsOne() {
+        play(0, 1);
+        mJournal.beginGroup();
+        play(1, 2);
+        mJournal.beginGroup();
+        play(2, 3);
+        mJournal.endGroup();
+        play(3, 4);
+        mJournal.endGroup();
+        play(4, 5);
+
+        assertTrue(mJournal.undo(mTarget));
+        assertEquals(0, mCells[4]);
+        assertEquals(4, mCells[3]);
+
+        assertTrue(mJournal.undo(mTarget));
+        assertEquals(1, mCells[0]);
+        assertEquals(0, mCells[1]);
+        assertEquals(0, mCells[2]);
+        assertEquals(0, mCells[3]);
+        assertEquals(1, mJournal.getCursor());
+
+        assertTrue(mJournal.redo(mTarget));
+        assertEquals(2, mCells[1]);
+        assertEquals(3, mCells[2]);
+        assertEquals(4, mCells[3]);
+        assertEquals(0, mCells[4]);
+        assertEquals(4, mJournal.getCursor());
+    }
+
+    @Test
+    public void adjacentGroupsStaySeparate() {
+        mJournal.beginGroup();
+        play(0, 1);
+        play(1, 2);
+        mJournal.endGroup();
+        mJournal.beginGroup();
+        play(2, 3);
+        mJournal.endGroup();
+
+        assertTrue(mJournal.undo(mTarget));
+        assertEquals(0, mCells[2]);
+        assertEquals(2, mCells[1]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsUnbalancedGroups() {
+        mJournal.endGroup();
+    }
+
+    @Test
+    public void recordingDropsRedoableMoves() {
+        play(0, 1);
+        play(1, 2);
+        mJournal.undo(mTarget);
+        play(2, 3);
+
+        assertFalse(mJournal.canRedo());
+        assertEquals(2, mJournal.size());
+        mJournal.undo(mTarget);
+        mJournal.undo(mTarget);
+        assertArrayEquals(new byte[81], mCells);
+    }
+
+    @Test
+    public void keepsGivenFlag() {
+        mJournal.record(10, 0, 9, true);
+        mCells[10] = 9;
+        mGiven[10] = true;
+
+        mJournal.undo(mTarget);
+        assertEquals(0, mCells[10]);
+        assertTrue(mGiven[10]);
+    }
+
+    @Test
+    public void tracksDirtyMoves() {
+        play(0, 1);
+        play(1, 2);
+        mJournal.markSynced();
+        assertEquals(2, mJournal.getDirtyFrom());
+
+        play(2, 3);
+        assertEquals(2, mJournal.getDirtyFrom());
+        mJournal.markSynced();
+
+        mJournal.undo(mTarget);
+        mJournal.undo(mTarget);
+        play(3, 4);
+        assertEquals(1, mJournal.getDirtyFrom());
+    }
+
+    @Test
+    public void loadsCopiedMoves() {
+        play(0, 1);
+        mJournal.beginGroup();
+        play(1, 2);
+        play(2, 3);
+        mJournal.endGroup();
+        mJournal.undo(mTarget);
+
+        MoveJournal copy = new MoveJournal();
+        copy.load(mJournal.copyMoves(0), mJournal.getCursor());
+        assertEquals(3, copy.size());
+        assertEquals(1, copy.getCursor());
+        assertEquals(3, copy.getDirtyFrom());
+
+        assertTrue(copy.redo(mTarget));
+        assertEquals(2, mCells[1]);
+        assertEquals(3, mCells[2]);
+        assertFalse(copy.canRedo());
+    }
+
+    @Test(expected = InvalidParameterException.class)
+    public void rejectsMovesOutOfRange() {
+        mJournal.record(0, 0, 32, false);
+    }
+
+    private void play(int cell, int value) {
+        mJournal.record(cell, mCells[cell], value, false);
+        mCells[cell] = (byte) value;
+    }
+}
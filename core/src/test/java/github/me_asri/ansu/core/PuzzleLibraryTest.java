@@ -0,0 +1,107 @@
+package github.me_asri.ansu.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PuzzleLibraryTest {
+    static private final String PUZZLE =
+            "8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4..";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsPuzzles() throws IOException {
+        byte[] givens = cells(PUZZLE);
+        byte[] solution = BitSolver.forWidth(9).solve(givens);
+        Grade grade = Grade.fromScore(12345);
+
+        File file = mFolder.newFile();
+        try (PuzzleLibraryWriter writer = new PuzzleLibraryWriter(file, 9)) {
+            writer.add(new Puzzle(givens, grade), solution, false);
+            writer.add(new Puzzle(givens), null, false);
+            writer.add(new Puzzle(new byte[81]), solution, true);
+            assertEquals(3, writer.size());
+        }
+
+        try (PuzzleLibrary library = PuzzleLibrary.open(file)) {
+            assertEquals(9, library.getWidth());
+            assertEquals(3, library.size());
+
+            byte[] readGivens = new byte[81];
+            byte[] readSolution = new byte[81];
+            int flags = library.read(0, readGivens, readSolution);
+            assertEquals(PuzzleLibrary.FLAG_GRADED | PuzzleLibrary.FLAG_SOLVED, flags);
+            assertArrayEquals(givens, readGivens);
+            assertArrayEquals(solution, readSolution);
+            assertEquals(grade, library.getGrade(0));
+
+            assertEquals(0, library.getFlags(1));
+            assertArrayEquals(givens, library.get(1).getCells());
+            assertNull(library.get(1).getGrade());
+            assertNull(library.getSolution(1));
+
+            assertEquals(PuzzleLibrary.FLAG_SOLVED | PuzzleLibrary.FLAG_MULTIPLE, library.getFlags(2));
+            assertArrayEquals(new byte[81], library.get(2).getCells());
+            assertArrayEquals(solution, library.getSolution(2));
+        }
+    }
+
+    @Test
+    public void sortsByGrade() throws IOException {
+        int[] scores = {300, -1, 100, 200};
+
+        File file = mFolder.newFile();
+        try (PuzzleLibraryWriter writer = new PuzzleLibraryWriter(file, 9)) {
+            writer.setSortByGrade(true);
+            writer.add(new Puzzle(new byte[81]), null, false);
+            for (int score : scores) {
+                writer.add(new Puzzle(new byte[81], Grade.fromScore(score)), null, false);
+            }
+        }
+
+        try (PuzzleLibrary library = PuzzleLibrary.open(file)) {
+            assertEquals(100, library.getGrade(0).getScore());
+            assertEquals(200, library.getGrade(1).getScore());
+            assertEquals(300, library.getGrade(2).getScore());
+            // Ungraded and unsolvable puzzles follow in the order they were added
+            assertNull(library.getGrade(3));
+            assertFalse(library.getGrade(4).isSolvable());
+        }
+    }
+
+    @Test
+    public void detectsLibraries() throws IOException {
+        File library = mFolder.newFile();
+        new PuzzleLibraryWriter(library, 9).close();
+        File text = mFolder.newFile();
+
+        try (RandomAccessFile input = new RandomAccessFile(library, "r")) {
+            assertTrue(PuzzleLibrary.isLibrary(input.getChannel()));
+        }
+        try (RandomAccessFile input = new RandomAccessFile(text, "r")) {
+            assertFalse(PuzzleLibrary.isLibrary(input.getChannel()));
+        }
+    }
+
+    static private byte[] cells(String puzzle) {
+        byte[] cells = new byte[puzzle.length()];
+        for (int i = 0; i < cells.length; i++) {
+            char c = puzzle.charAt(i);
+            cells[i] = (byte) ((c == '.') ? 0 : c - '0');
+        }
+
+        return cells;
+    }
+}
@@ -0,0 +1,224 @@
+package github.me_asri.ansu.tools;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import github.me_asri.ansu.core.BitSolver;
+import github.me_asri.ansu.core.Grids;
+import github.me_asri.ansu.core.LatencyHistogram;
+import github.me_asri.ansu.core.PortfolioSolver;
+import github.me_asri.ansu.core.PuzzleReader;
+
+/**
+ * Solves every puzzle of a collection on all cores and writes the solutions in input order.
+ * <p>
+ * Each output line holds the first solution found, followed by {@code multiple} if the puzzle
+ * has more than one. Unsolvable puzzles are written unchanged, followed by {@code unsolvable}.
+ * Statistics are printed to standard error.
+ * <p>
+ * In portfolio mode every puzzle is solved by a {@link PortfolioSolver}, so the few puzzles the
+ * plain search order is slow on are raced by several orders on extra threads.
+ */
+public class BatchSolve {
+    static private final int CHUNK_SIZE = 256;
+
+    private final int mWidth;
+    private final int mThreads;
+
+    private final LatencyHistogram mLatency = new LatencyHistogram();
+    private final AtomicLong mUnsolvable = new AtomicLong();
+    private final AtomicLong mMultiple = new AtomicLong();
+    private final AtomicLong[] mWins = new AtomicLong[PortfolioSolver.Strategy.values().length];
+
+    private final ThreadLocal<BitSolver> mSolver;
+    private ThreadLocal<PortfolioSolver> mPortfolio = null;
+
+    public BatchSolve(int width, int threads) {
+        mWidth = width;
+        mThreads = threads;
+
+        mSolver = ThreadLocal.withInitial(() -> BitSolver.forWidth(width));
+        for (int i = 0; i < mWins.length; i++) {
+            mWins[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Switches to portfolio mode, which must be done before solving.
+     *
+     * @param races executor the strategies are raced on, null to only use the plain solver
+     */
+    public void setPortfolio(ExecutorService races) {
+        mPortfolio = (races == null) ? null : ThreadLocal.withInitial(() -> new PortfolioSolver(mWidth, races));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int width = 9;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String inputPath = null;
+        String outputPath = null;
+        boolean portfolio = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-w":
+                    width = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-o":
+                    outputPath = args[++i];
+                    break;
+                case "-p":
+                    portfolio = true;
+                    break;
+                default:
+                    inputPath = args[i];
+                    break;
+            }
+        }
+        if (inputPath == null) {
+            System.err.println("Usage: BatchSolve [-w width] [-t threads] [-o output] [-p] input");
+            System.exit(2);
+        }
+
+        ExecutorService races = portfolio ? Executors.newCachedThreadPool() : null;
+        try (InputStream input = new FileInputStream(inputPath);
+             OutputStream output = (outputPath == null) ? System.out : new FileOutputStream(outputPath)) {
+            BatchSolve solve = new BatchSolve(width, threads);
+            solve.setPortfolio(races);
+            solve.run(input, output);
+        } finally {
+            if (races != null) {
+                races.shutdownNow();
+            }
+        }
+    }
+
+    public void run(InputStream input, OutputStream output) throws IOException, InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(mThreads);
+        int size = mWidth * mWidth;
+
+        long startTime = System.nanoTime();
+        long total = 0;
+        try (PuzzleReader reader = new PuzzleReader(input, mWidth);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.US_ASCII))) {
+            // Bounds the number of chunks in flight, so memory does not grow with the input
+            ArrayDeque<Future<char[]>> pending = new ArrayDeque<>();
+
+            boolean eof = false;
+            while (!eof || !pending.isEmpty()) {
+                while (!eof && pending.size() < mThreads * 4) {
+                    byte[][] chunk = new byte[CHUNK_SIZE][size];
+                    int count = 0;
+                    while (count < CHUNK_SIZE && reader.read(chunk[count])) {
+                        count++;
+                    }
+                    if (count < CHUNK_SIZE) {
+                        eof = true;
+                    }
+                    if (count == 0) {
+                        break;
+                    }
+
+                    total += count;
+                    int chunkSize = count;
+                    pending.add(pool.submit(() -> solveChunk(chunk, chunkSize)));
+                }
+
+                if (!pending.isEmpty()) {
+                    writer.write(pending.poll().get());
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        printStats(System.err, total, (System.nanoTime() - startTime) / 1e9);
+    }
+
+    void printStats(PrintStream out, long total, double seconds) {
+        out.printf("Puzzles:     %d%n", total);
+        out.printf("Elapsed:     %.3f s%n", seconds);
+        out.printf("Throughput:  %.1f puzzles/s%n", total / seconds);
+        out.printf("Latency p50: %d us%n", TimeUnit.NANOSECONDS.toMicros(mLatency.getPercentile(50)));
+        out.printf("Latency p99: %d us%n", TimeUnit.NANOSECONDS.toMicros(mLatency.getPercentile(99)));
+        out.printf("Unsolvable:  %d%n", mUnsolvable.get());
+        out.printf("Multiple:    %d%n", mMultiple.get());
+        if (mPortfolio != null) {
+            // Puzzles settled within the head start are not counted
+            StringBuilder wins = new StringBuilder();
+            for (PortfolioSolver.Strategy strategy : PortfolioSolver.Strategy.values()) {
+                if (wins.length() > 0) {
+                    wins.append(", ");
+                }
+                wins.append(strategy.name().toLowerCase(Locale.ROOT)).append(' ').append(mWins[strategy.ordinal()].get());
+            }
+            out.printf("Race wins:   %s%n", wins);
+        }
+    }
+
+    /**
+     * Solves the first {@code count} puzzles of a chunk, safe to call from any thread.
+     *
+     * @return one output line per puzzle
+     */
+    char[] solveChunk(byte[][] chunk, int count) {
+        BitSolver solver = mSolver.get();
+        PortfolioSolver portfolio = (mPortfolio == null) ? null : mPortfolio.get();
+        int size = mWidth * mWidth;
+
+        StringBuilder builder = new StringBuilder(count * (size + 12));
+        byte[] solution = new byte[size];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            int solutions;
+            if (portfolio == null) {
+                solutions = solver.solve(chunk[i], solution, 2);
+            } else {
+                solutions = portfolio.solve(chunk[i], solution, 2);
+                if (portfolio.getWinner() != null) {
+                    mWins[portfolio.getWinner().ordinal()].incrementAndGet();
+                }
+            }
+            mLatency.record(System.nanoTime() - start);
+
+            if (solutions == 0) {
+                Grids.appendCells(builder, chunk[i], mWidth);
+                builder.append(" unsolvable");
+                mUnsolvable.incrementAndGet();
+            } else {
+                Grids.appendCells(builder, solution, mWidth);
+                if (solutions > 1) {
+                    builder.append(" multiple");
+                    mMultiple.incrementAndGet();
+                }
+            }
+            builder.append('\n');
+        }
+
+        char[] result = new char[builder.length()];
+        builder.getChars(0, builder.length(), result, 0);
+        return result;
+    }
+}
@@ -0,0 +1,153 @@
+package github.me_asri.ansu.tools;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import github.me_asri.ansu.core.Canonicalizer;
+import github.me_asri.ansu.core.Grids;
+import github.me_asri.ansu.core.LongHashSet;
+import github.me_asri.ansu.core.PuzzleReader;
+
+/**
+ * Removes equivalent puzzles from a 9x9 collection, keeping the first of each in input order.
+ * <p>
+ * Puzzles count as duplicates if their {@link Canonicalizer} fingerprints match, so relabelled,
+ * permuted and transposed copies are dropped too. Chunks are canonicalized on all cores while
+ * the input is still being read, only the fingerprints seen so far are kept in memory.
+ * Statistics are printed to standard error.
+ */
+public class Dedup {
+    static private final int WIDTH = 9;
+    static private final int SIZE = WIDTH * WIDTH;
+    static private final int CHUNK_SIZE = 1024;
+
+    private final int mThreads;
+    private final boolean mCanonical;
+
+    private final ThreadLocal<Canonicalizer> mCanonicalizer = ThreadLocal.withInitial(Canonicalizer::new);
+    private final LongHashSet mSeen = new LongHashSet(1 << 20);
+
+    /**
+     * @param canonical whether to write the canonical forms instead of the puzzles as read
+     */
+    public Dedup(int threads, boolean canonical) {
+        mThreads = threads;
+        mCanonical = canonical;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean canonical = false;
+        String inputPath = null;
+        String outputPath = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-t":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-c":
+                    canonical = true;
+                    break;
+                case "-o":
+                    outputPath = args[++i];
+                    break;
+                default:
+                    inputPath = args[i];
+                    break;
+            }
+        }
+        if (inputPath == null) {
+            System.err.println("Usage: Dedup [-t threads] [-c] [-o output] input");
+            System.exit(2);
+        }
+
+        try (InputStream input = new FileInputStream(inputPath);
+             OutputStream output = (outputPath == null) ? System.out : new FileOutputStream(outputPath)) {
+            new Dedup(threads, canonical).run(input, output);
+        }
+    }
+
+    public void run(InputStream input, OutputStream output) throws IOException, InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(mThreads);
+
+        long startTime = System.nanoTime();
+        long total = 0;
+        try (PuzzleReader reader = new PuzzleReader(input, WIDTH);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.US_ASCII))) {
+            // Bounds the number of chunks in flight, so memory does not grow with the input
+            ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+
+            boolean eof = false;
+            while (!eof || !pending.isEmpty()) {
+                while (!eof && pending.size() < mThreads * 4) {
+                    Chunk chunk = new Chunk();
+                    while (chunk.count < CHUNK_SIZE && reader.read(chunk.cells[chunk.count])) {
+                        chunk.count++;
+                    }
+                    if (chunk.count < CHUNK_SIZE) {
+                        eof = true;
+                    }
+                    if (chunk.count == 0) {
+                        break;
+                    }
+
+                    total += chunk.count;
+                    pending.add(pool.submit(() -> fingerprint(chunk)));
+                }
+
+                if (!pending.isEmpty()) {
+                    // The set is only touched here, so first occurrences win in input order
+                    Chunk chunk = pending.poll().get();
+                    for (int i = 0; i < chunk.count; i++) {
+                        if (mSeen.add(chunk.fingerprints[i])) {
+                            Grids.writeCells(writer, chunk.cells[i], WIDTH);
+                            writer.write('\n');
+                        }
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.err.printf("Puzzles:    %d%n", total);
+        System.err.printf("Unique:     %d%n", mSeen.size());
+        System.err.printf("Duplicates: %d%n", total - mSeen.size());
+        System.err.printf("Elapsed:    %.3f s%n", seconds);
+        System.err.printf("Throughput: %.1f puzzles/s%n", total / seconds);
+    }
+
+    private Chunk fingerprint(Chunk chunk) {
+        Canonicalizer canonicalizer = mCanonicalizer.get();
+        byte[] canonical = new byte[SIZE];
+        for (int i = 0; i < chunk.count; i++) {
+            canonicalizer.canonicalize(chunk.cells[i], canonical);
+            chunk.fingerprints[i] = Canonicalizer.fingerprint(canonical);
+            if (mCanonical) {
+                System.arraycopy(canonical, 0, chunk.cells[i], 0, SIZE);
+            }
+        }
+        return chunk;
+    }
+
+    static private class Chunk {
+        final byte[][] cells = new byte[CHUNK_SIZE][SIZE];
+        final long[] fingerprints = new long[CHUNK_SIZE];
+        int count = 0;
+    }
+}
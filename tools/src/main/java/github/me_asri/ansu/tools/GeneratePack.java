@@ -0,0 +1,105 @@
+package github.me_asri.ansu.tools;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import github.me_asri.ansu.core.Grids;
+import github.me_asri.ansu.core.ParallelGenerator;
+import github.me_asri.ansu.core.Symmetry;
+
+/**
+ * Generates a pack of riddles on all cores and writes one riddle per line.
+ * <p>
+ * Riddles can be given a target number of givens, a clue symmetry and be required to be
+ * minimal, in which case the target is the most givens allowed. Progress and throughput are
+ * printed to standard error.
+ */
+public class GeneratePack {
+    static private final long PROGRESS_INTERVAL_MS = 5000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int width = 9;
+        int count = 0;
+        int clues = 0;
+        Symmetry symmetry = Symmetry.NONE;
+        boolean minimal = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String outputPath = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-w":
+                    width = Integer.parseInt(args[++i]);
+                    break;
+                case "-c":
+                    clues = Integer.parseInt(args[++i]);
+                    break;
+                case "-s":
+                    symmetry = Symmetry.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                    break;
+                case "-m":
+                    minimal = true;
+                    break;
+                case "-t":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-o":
+                    outputPath = args[++i];
+                    break;
+                default:
+                    count = Integer.parseInt(args[i]);
+                    break;
+            }
+        }
+        if (count <= 0) {
+            System.err.println("Usage: GeneratePack [-w width] [-c clues] [-s symmetry] [-m] [-t threads] [-o output] count");
+            System.err.println("       symmetry: none, rotational, quarter_turn, mirror or diagonal");
+            System.exit(2);
+        }
+
+        ParallelGenerator generator = new ParallelGenerator(width, threads);
+        generator.setTargetClues(clues);
+        generator.setSymmetry(symmetry);
+        generator.setMinimal(minimal);
+
+        int finalWidth = width;
+        long startTime = System.currentTimeMillis();
+        long[] lastReport = {startTime};
+        try (OutputStream output = (outputPath == null) ? System.out : new FileOutputStream(outputPath);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.US_ASCII))) {
+            generator.generate(count, riddle -> {
+                try {
+                    Grids.writeCells(writer, riddle.getCells(), finalWidth);
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastReport[0] >= PROGRESS_INTERVAL_MS) {
+                    lastReport[0] = now;
+                    System.err.printf("%d riddles, %.1f riddles/s%n", generator.getGenerated() + 1,
+                            (generator.getGenerated() + 1) * 1000.0 / (now - startTime));
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalStateException e) {
+            // Goals too strict for the grids dug
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+
+        System.err.printf("Riddles:    %d%n", generator.getGenerated());
+        System.err.printf("Grids dug:  %d%n", generator.getAttempts());
+        System.err.printf("Elapsed:    %.3f s%n", (System.currentTimeMillis() - startTime) / 1e3);
+        System.err.printf("Throughput: %.1f riddles/s%n", generator.getPuzzlesPerSecond());
+    }
+}
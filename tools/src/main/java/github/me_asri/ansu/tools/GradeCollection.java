@@ -0,0 +1,106 @@
+package github.me_asri.ansu.tools;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import github.me_asri.ansu.core.Difficulty;
+import github.me_asri.ansu.core.Grade;
+import github.me_asri.ansu.core.Grader;
+import github.me_asri.ansu.core.Grids;
+import github.me_asri.ansu.core.Puzzle;
+import github.me_asri.ansu.core.PuzzleReader;
+
+/**
+ * Grades every puzzle of a collection on all cores.
+ * <p>
+ * Each output line holds the puzzle followed by its grade score and difficulty, optionally
+ * sorted from easiest to hardest. A summary per difficulty is printed to standard error.
+ */
+public class GradeCollection {
+    public static void main(String[] args) throws IOException {
+        int width = 9;
+        boolean sort = false;
+        String inputPath = null;
+        String outputPath = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-w":
+                    width = Integer.parseInt(args[++i]);
+                    break;
+                case "-s":
+                    sort = true;
+                    break;
+                case "-o":
+                    outputPath = args[++i];
+                    break;
+                default:
+                    inputPath = args[i];
+                    break;
+            }
+        }
+        if (inputPath == null) {
+            System.err.println("Usage: GradeCollection [-w width] [-s] [-o output] input");
+            System.exit(2);
+        }
+
+        List<Puzzle> puzzles = new ArrayList<>();
+        try (InputStream input = new FileInputStream(inputPath);
+             PuzzleReader reader = new PuzzleReader(input, width)) {
+            while (reader.hasNext()) {
+                puzzles.add(new Puzzle(reader.next()));
+            }
+        }
+
+        int finalWidth = width;
+        ThreadLocal<Grader> graders = ThreadLocal.withInitial(() -> Grader.forWidth(finalWidth));
+
+        long startTime = System.nanoTime();
+        puzzles.parallelStream().forEach(puzzle -> graders.get().grade(puzzle));
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        if (sort) {
+            puzzles.sort(Comparator.comparing(Puzzle::getGrade));
+        }
+
+        Map<Difficulty, Integer> counts = new EnumMap<>(Difficulty.class);
+        int unsolvable = 0;
+        try (OutputStream output = (outputPath == null) ? System.out : new FileOutputStream(outputPath);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.US_ASCII))) {
+            for (Puzzle puzzle : puzzles) {
+                Grade grade = puzzle.getGrade();
+                Grids.writeCells(writer, puzzle.getCells(), width);
+                writer.write(' ');
+                writer.write(Integer.toString(grade.getScore()));
+                writer.write(' ');
+                writer.write(grade.isSolvable() ? grade.getDifficulty().name() : "UNSOLVABLE");
+                writer.write('\n');
+
+                if (grade.isSolvable()) {
+                    counts.merge(grade.getDifficulty(), 1, Integer::sum);
+                } else {
+                    unsolvable++;
+                }
+            }
+        }
+
+        System.err.printf("Puzzles:    %d%n", puzzles.size());
+        System.err.printf("Throughput: %.1f puzzles/s%n", puzzles.size() / seconds);
+        for (Map.Entry<Difficulty, Integer> entry : counts.entrySet()) {
+            System.err.printf("%-11s %d%n", entry.getKey() + ":", entry.getValue());
+        }
+        System.err.printf("Unsolvable: %d%n", unsolvable);
+    }
+}
@@ -0,0 +1,152 @@
+package github.me_asri.ansu.tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import github.me_asri.ansu.core.BitSolver;
+import github.me_asri.ansu.core.Grader;
+import github.me_asri.ansu.core.Grids;
+import github.me_asri.ansu.core.Puzzle;
+import github.me_asri.ansu.core.PuzzleLibrary;
+import github.me_asri.ansu.core.PuzzleLibraryWriter;
+import github.me_asri.ansu.core.PuzzleReader;
+
+/**
+ * Converts between text collections and {@link PuzzleLibrary} files.
+ * <p>
+ * {@code pack} solves, and optionally grades, every puzzle of a text collection on all cores and
+ * stores it in a library, indexed from the easiest to the hardest grade if sorted. {@code unpack}
+ * writes the givens of a library back as one puzzle per line, followed by the grade score if known.
+ */
+public class LibraryTool {
+    static private final int CHUNK_SIZE = 4096;
+
+    public static void main(String[] args) throws IOException {
+        int width = 0;
+        boolean grade = false;
+        boolean sort = false;
+        String command = null;
+        String inputPath = null;
+        String outputPath = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-w":
+                    width = Integer.parseInt(args[++i]);
+                    break;
+                case "-g":
+                    grade = true;
+                    break;
+                case "-s":
+                    sort = true;
+                    break;
+                case "-o":
+                    outputPath = args[++i];
+                    break;
+                default:
+                    if (command == null) {
+                        command = args[i];
+                    } else {
+                        inputPath = args[i];
+                    }
+                    break;
+            }
+        }
+
+        if ("pack".equals(command) && inputPath != null && outputPath != null) {
+            // Sorting needs the grades
+            pack(inputPath, outputPath, width, grade || sort, sort);
+        } else if ("unpack".equals(command) && inputPath != null) {
+            unpack(inputPath, outputPath);
+        } else {
+            System.err.println("Usage: LibraryTool pack [-w width] [-g] [-s] -o output input");
+            System.err.println("       LibraryTool unpack [-o output] input");
+            System.exit(2);
+        }
+    }
+
+    static private void pack(String inputPath, String outputPath, int width, boolean grade, boolean sort)
+            throws IOException {
+        long startTime = System.nanoTime();
+
+        PuzzleLibraryWriter writer = null;
+        try (InputStream input = new FileInputStream(inputPath);
+             PuzzleReader reader = new PuzzleReader(input, width)) {
+            // Only used once the first puzzle told the width
+            ThreadLocal<BitSolver> solvers = ThreadLocal.withInitial(() -> BitSolver.forWidth(reader.getWidth()));
+            ThreadLocal<Grader> graders = ThreadLocal.withInitial(() -> Grader.forWidth(reader.getWidth()));
+
+            while (reader.hasNext()) {
+                List<Puzzle> chunk = new ArrayList<>(CHUNK_SIZE);
+                while (chunk.size() < CHUNK_SIZE && reader.hasNext()) {
+                    chunk.add(new Puzzle(reader.next()));
+                }
+
+                if (writer == null) {
+                    writer = new PuzzleLibraryWriter(new File(outputPath), reader.getWidth());
+                    writer.setSortByGrade(sort);
+                }
+
+                // Solutions found, null if none, and whether there is more than one
+                byte[][] solutions = new byte[chunk.size()][];
+                boolean[] multiple = new boolean[chunk.size()];
+
+                IntStream.range(0, chunk.size()).parallel().forEach(i -> {
+                    Puzzle puzzle = chunk.get(i);
+                    byte[] solution = new byte[puzzle.getCells().length];
+                    int count = solvers.get().solve(puzzle.getCells(), solution, 2);
+
+                    solutions[i] = (count > 0) ? solution : null;
+                    multiple[i] = count > 1;
+                    if (grade) {
+                        graders.get().grade(puzzle);
+                    }
+                });
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    writer.add(chunk.get(i), solutions[i], multiple[i]);
+                }
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        int count = (writer != null) ? writer.size() : 0;
+        System.err.printf("Puzzles:    %d%n", count);
+        System.err.printf("Throughput: %.1f puzzles/s%n", count / seconds);
+    }
+
+    static private void unpack(String inputPath, String outputPath) throws IOException {
+        try (PuzzleLibrary library = PuzzleLibrary.open(new File(inputPath));
+             OutputStream output = (outputPath == null) ? System.out : new FileOutputStream(outputPath);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.US_ASCII))) {
+            int width = library.getWidth();
+            byte[] givens = new byte[width * width];
+            byte[] solution = new byte[width * width];
+
+            for (int i = 0; i < library.size(); i++) {
+                int flags = library.read(i, givens, solution);
+                Grids.writeCells(writer, givens, width);
+                if ((flags & PuzzleLibrary.FLAG_GRADED) != 0) {
+                    writer.write(' ');
+                    writer.write(Integer.toString(library.getGrade(i).getScore()));
+                }
+                writer.write('\n');
+            }
+        }
+    }
+}
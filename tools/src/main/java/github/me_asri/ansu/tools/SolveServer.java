@@ -0,0 +1,285 @@
+package github.me_asri.ansu.tools;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import github.me_asri.ansu.core.PuzzleFormatException;
+import github.me_asri.ansu.core.PuzzleReader;
+
+/**
+ * Local service solving batches of puzzles on all cores.
+ * <p>
+ * {@code POST /solve} takes a batch in any format {@link PuzzleReader} accepts and answers with
+ * one line per puzzle, in the format {@link BatchSolve} writes. {@code GET /stats} reports
+ * throughput and latency so far. The server only listens on the loopback address. With
+ * {@code -i}, a single batch is read from standard input and solved to standard output instead.
+ * With {@code -r}, puzzles are solved in the portfolio mode of {@link BatchSolve}.
+ * <p>
+ * Chunks of puzzles are read from a batch only while the solver queue has room, and solutions
+ * are streamed back as they are done, so neither side has to hold a whole batch. A batch that
+ * cannot get its first chunk queued in time is turned away with {@code 503} and a
+ * {@code Retry-After} header; later chunks wait, which slows down the upload instead.
+ */
+public class SolveServer {
+    static private final int CHUNK_SIZE = 256;
+    static private final int HANDLER_THREADS = 4;
+    static private final long ADMISSION_TIMEOUT_MS = 1000;
+    static private final String RETRY_AFTER_S = "1";
+
+    private final int mWidth;
+    private final BatchSolve mSolve;
+    private final ExecutorService mExecutor;
+    // One permit per chunk that may be queued or solving
+    private final Semaphore mPermits;
+
+    private final AtomicLong mPuzzles = new AtomicLong();
+    private final AtomicLong mBatches = new AtomicLong();
+    private final AtomicLong mRejected = new AtomicLong();
+    private final long mStartTime = System.nanoTime();
+
+    public SolveServer(int width, int threads, int queueChunks) {
+        mWidth = width;
+        mSolve = new BatchSolve(width, threads);
+        mExecutor = Executors.newFixedThreadPool(threads);
+        mPermits = new Semaphore(queueChunks);
+    }
+
+    /**
+     * @see BatchSolve#setPortfolio(ExecutorService)
+     */
+    public void setPortfolio(ExecutorService races) {
+        mSolve.setPortfolio(races);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int width = 9;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queueChunks = 0;
+        int port = 8080;
+        boolean stdin = false;
+        boolean portfolio = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-w":
+                    width = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-q":
+                    queueChunks = Integer.parseInt(args[++i]);
+                    break;
+                case "-p":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    stdin = true;
+                    break;
+                case "-r":
+                    portfolio = true;
+                    break;
+                default:
+                    System.err.println("Usage: SolveServer [-w width] [-t threads] [-q queued chunks] [-p port] [-i] [-r]");
+                    System.exit(2);
+            }
+        }
+        if (queueChunks <= 0) {
+            queueChunks = threads * 4;
+        }
+
+        ExecutorService races = portfolio ? Executors.newCachedThreadPool() : null;
+        if (stdin) {
+            // Reading stops while the solver is behind, which blocks the writing process
+            BatchSolve solve = new BatchSolve(width, threads);
+            solve.setPortfolio(races);
+            try {
+                solve.run(System.in, System.out);
+            } finally {
+                if (races != null) {
+                    races.shutdownNow();
+                }
+            }
+            return;
+        }
+
+        SolveServer server = new SolveServer(width, threads, queueChunks);
+        server.setPortfolio(races);
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/solve", server::handleSolve);
+        http.createContext("/stats", server::handleStats);
+        http.setExecutor(Executors.newFixedThreadPool(HANDLER_THREADS));
+        http.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            http.stop(0);
+            server.mExecutor.shutdownNow();
+            if (races != null) {
+                races.shutdownNow();
+            }
+        }));
+
+        System.err.printf("Listening on http://%s:%d/solve%n",
+                http.getAddress().getHostString(), http.getAddress().getPort());
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendText(exchange, 405, "Method not allowed\n");
+            return;
+        }
+
+        int size = mWidth * mWidth;
+        ArrayDeque<Future<char[]>> pending = new ArrayDeque<>();
+        Writer writer = null;
+        String error = null;
+        try (PuzzleReader reader = new PuzzleReader(exchange.getRequestBody(), mWidth)) {
+            boolean eof = false;
+            while (!eof) {
+                byte[][] chunk = new byte[CHUNK_SIZE][size];
+                int count = 0;
+                try {
+                    while (count < CHUNK_SIZE && reader.read(chunk[count])) {
+                        count++;
+                    }
+                } catch (PuzzleFormatException e) {
+                    if (count == 0 && pending.isEmpty() && writer == null) {
+                        sendText(exchange, 400, e.getMessage() + "\n");
+                        return;
+                    }
+                    // Puzzles before are still solved, the error ends the response
+                    error = e.getMessage();
+                    eof = true;
+                }
+                if (count < CHUNK_SIZE) {
+                    eof = true;
+                }
+                if (count == 0) {
+                    break;
+                }
+
+                if (pending.isEmpty() && writer == null) {
+                    if (!mPermits.tryAcquire(ADMISSION_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        mRejected.incrementAndGet();
+                        exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_S);
+                        sendText(exchange, 503, "Solver queue full\n");
+                        return;
+                    }
+                } else {
+                    // Hand back finished chunks while waiting, so the permits held here free up
+                    while (!mPermits.tryAcquire()) {
+                        if (pending.isEmpty()) {
+                            mPermits.acquire();
+                            break;
+                        }
+                        writer = write(exchange, writer, pending.poll());
+                    }
+                }
+
+                mPuzzles.addAndGet(count);
+                int chunkSize = count;
+                pending.add(mExecutor.submit(() -> {
+                    try {
+                        return mSolve.solveChunk(chunk, chunkSize);
+                    } finally {
+                        mPermits.release();
+                    }
+                }));
+            }
+
+            writer = drain(exchange, writer, pending);
+            if (error != null) {
+                writer.write("error " + error + "\n");
+            } else {
+                mBatches.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            // Chunks still queued after an error are solved and dropped
+            for (Future<char[]> future : pending) {
+                try {
+                    future.get();
+                } catch (InterruptedException | ExecutionException ignored) {
+                }
+            }
+
+            if (writer != null) {
+                writer.close();
+            }
+            exchange.close();
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, false, "US-ASCII");
+        out.printf("Batches:     %d%n", mBatches.get());
+        out.printf("Rejected:    %d%n", mRejected.get());
+        out.printf("Queue free:  %d chunks%n", mPermits.availablePermits());
+        mSolve.printStats(out, mPuzzles.get(), (System.nanoTime() - mStartTime) / 1e9);
+        out.flush();
+
+        sendText(exchange, 200, buffer.toString("US-ASCII"));
+    }
+
+    private Writer drain(HttpExchange exchange, Writer writer, ArrayDeque<Future<char[]>> pending)
+            throws IOException, InterruptedException {
+        if (writer == null) {
+            writer = startResponse(exchange);
+        }
+        while (!pending.isEmpty()) {
+            writer = write(exchange, writer, pending.poll());
+        }
+        return writer;
+    }
+
+    private Writer write(HttpExchange exchange, Writer writer, Future<char[]> future)
+            throws IOException, InterruptedException {
+        if (writer == null) {
+            writer = startResponse(exchange);
+        }
+
+        try {
+            writer.write(future.get());
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        writer.flush();
+        return writer;
+    }
+
+    private Writer startResponse(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=US-ASCII");
+        // Length 0 streams the body in chunks
+        exchange.sendResponseHeaders(200, 0);
+        return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.US_ASCII));
+    }
+
+    private void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=US-ASCII");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+}